@@ -1,17 +1,33 @@
 package net.variantgenerator.mod;
 
 import dev.architectury.event.events.common.LifecycleEvent;
+import dev.architectury.platform.Mod;
+import dev.architectury.platform.Platform;
 import dev.architectury.registry.registries.DeferredRegister;
 import dev.architectury.registry.registries.RegistrySupplier;
 import net.minecraft.item.Item;
 import net.minecraft.registry.RegistryKeys;
+import net.variantgenerator.mod.config.VariantGeneratorConfig;
+import net.variantgenerator.mod.core.EnderiteColorCache;
 import net.variantgenerator.mod.core.VariantRegistry;
+import net.variantgenerator.mod.texture.RowBands;
 import net.variantgenerator.mod.texture.TextureColorizer;
 import net.variantgenerator.mod.variant.VariantGenerator;
 import net.variantgenerator.mod.recipe.RecipeScanner;
+import net.variantgenerator.mod.util.ScanPatternMatcher;
+import net.variantgenerator.mod.util.WorkerPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Main class for the Variant Generator Mod
  *
@@ -29,33 +45,106 @@ public class VariantGeneratorMod {
     public static final DeferredRegister<Item> ITEMS = DeferredRegister.create(MOD_ID, RegistryKeys.ITEM);
 
     // Variant Generator Core Components
+    private static VariantGeneratorConfig config;
     private static VariantRegistry variantRegistry;
     private static TextureColorizer textureColorizer;
     private static VariantGenerator variantGenerator;
     private static RecipeScanner recipeScanner;
+    private static volatile CompletableFuture<Void> generation; // started early by startGeneration, or null
 
     public static void init() {
         LOGGER.info("Initializing Variant Generator Mod");
 
         // Initialize core systems
+        config = new VariantGeneratorConfig();
+        config.validate();
+        WorkerPool.configure(config.performanceConfig.generationThreads);
+        WorkerPool.configureIo(config.performanceConfig.ioThreads);
+        RowBands.configure(config.performanceConfig.parallelGeneration ? config.performanceConfig.tileThreshold : 0);
+        ScanPatternMatcher.configure(config.scanningConfig.scanPatterns);
+        EnderiteColorCache.configure(Paths.get(config.performanceConfig.cacheDirectory).resolve("reference-palettes.json"),
+                config.textureConfig.paletteStops);
+
         variantRegistry = new VariantRegistry();
         textureColorizer = new TextureColorizer();
-        variantGenerator = new VariantGenerator(variantRegistry, textureColorizer);
+        variantGenerator = new VariantGenerator(variantRegistry, textureColorizer, config);
         recipeScanner = new RecipeScanner();
 
-        // Register lifecycle event to scan and generate variants after resource reload
-        LifecycleEvent.SETUP.register(() -> {
-            LOGGER.info("Starting variant generation process");
+        // Variants must exist by setup: wait for a generation started early, or run it now
+        LifecycleEvent.SETUP.register(VariantGeneratorMod::awaitGeneration);
+
+        LOGGER.info("Variant Generator Mod initialized successfully");
+    }
+
+    /**
+     * Starts variant generation on a background thread while other mods are still being constructed
+     * Generation only reads mod files and writes textures, so it does not depend on
+     * any registry; setup waits for it to finish
+     */
+    public static void startGeneration() {
+        if (generation != null) {
+            return;
+        }
+        // The mod list is complete at construction; read it on the loading thread
+        List<Path> modFiles = getModFiles();
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
             try {
-                // Scan for variants from other mods
-                variantGenerator.scanAndGenerateVariants();
-                LOGGER.info("Variant generation complete");
-            } catch (Exception e) {
-                LOGGER.error("Error during variant generation", e);
+                runGeneration(modFiles);
+            } finally {
+                started.complete(null);
             }
-        });
+        }, "VariantGenerator-Startup");
+        thread.setDaemon(true);
+        thread.setContextClassLoader(VariantGeneratorMod.class.getClassLoader());
+        generation = started;
+        thread.start();
+        LOGGER.info("Started variant generation in the background");
+    }
 
-        LOGGER.info("Variant Generator Mod initialized successfully");
+    /**
+     * Waits for a generation started early, or generates now if none was started
+     */
+    private static void awaitGeneration() {
+        CompletableFuture<Void> started = generation;
+        if (started == null) {
+            runGeneration(getModFiles());
+            return;
+        }
+        long start = System.nanoTime();
+        started.join();
+        LOGGER.info("Setup waited {} ms for variant generation", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void runGeneration(List<Path> modFiles) {
+        LOGGER.info("Starting variant generation process");
+        try {
+            // Scan for variants from other mods
+            variantGenerator.setResourceRoots(modFiles);
+            variantGenerator.scanAndGenerateVariants();
+            LOGGER.info("Variant generation complete");
+        } catch (Exception e) {
+            LOGGER.error("Error during variant generation", e);
+        }
+    }
+
+    /**
+     * Gets the files (jars, or resource directories in a dev environment) of every loaded mod
+     * that is not excluded in the scanning config
+     */
+    private static List<Path> getModFiles() {
+        Set<String> excluded = new HashSet<>(Arrays.asList(config.scanningConfig.excludedMods));
+        List<Path> files = new ArrayList<>();
+        for (Mod mod : Platform.getMods()) {
+            if (!excluded.contains(mod.getModId())) {
+                files.addAll(mod.getFilePaths());
+            }
+        }
+        return files;
+    }
+
+    public static VariantGeneratorConfig getConfig() {
+        return config;
     }
 
     public static VariantRegistry getVariantRegistry() {
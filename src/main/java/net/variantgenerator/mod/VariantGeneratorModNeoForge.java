@@ -17,6 +17,9 @@ public class VariantGeneratorModNeoForge {
         // Initialize the common mod
         VariantGeneratorMod.init();
 
+        // Generate while the remaining mods are constructed; joined at setup
+        VariantGeneratorMod.startGeneration();
+
         // Listen for load complete event
         modEventBus.addListener(this::onLoadComplete);
     }
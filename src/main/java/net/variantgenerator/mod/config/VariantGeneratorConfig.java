@@ -1,6 +1,16 @@
 package net.variantgenerator.mod.config;
 
+import net.variantgenerator.mod.core.VariantRegistry.ItemVariantTier;
+import net.variantgenerator.mod.texture.GradientLut;
+import net.variantgenerator.mod.texture.RowBands;
 import net.variantgenerator.mod.texture.TextureColorizer.Pixel;
+import net.variantgenerator.mod.util.ScanPatternMatcher;
+import net.variantgenerator.mod.util.WorkerPool;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 /**
  * Configuration for the Variant Generator Mod
@@ -14,12 +24,25 @@ public class VariantGeneratorConfig {
         public Pixel brightColor;
         public Pixel darkColor;
         public String tierName;
+        public List<Pixel> stops; // dark to bright; null uses darkColor and brightColor only
 
         public TierColors(String tierName, Pixel brightColor, Pixel darkColor) {
             this.tierName = tierName;
             this.brightColor = brightColor;
             this.darkColor = darkColor;
         }
+
+        public TierColors(String tierName, List<Pixel> stops) {
+            this(tierName, stops.get(stops.size() - 1), stops.get(0));
+            this.stops = List.copyOf(stops);
+        }
+
+        /**
+         * Gets the compiled dark-to-bright gradient table for this tier
+         */
+        public GradientLut gradient() {
+            return stops != null ? GradientLut.of(stops) : GradientLut.of(darkColor, brightColor);
+        }
     }
 
     /**
@@ -37,12 +60,23 @@ public class VariantGeneratorConfig {
      * Texture configuration
      */
     public static class TextureConfig {
+        public static final String OUTPUT_DIRECTORY = "directory";
+        public static final String OUTPUT_ZIP = "zip";
+
         public int textureSize = 16;
-        public boolean generateMipmaps = true;
+        public boolean generateMipmaps = true; // build mip chains with the textures, used by the atlas
+        public boolean normalizeTextureSize = false; // scale sources to textureSize wide
+        public int paletteStops = 5; // color stops taken from reference textures, 2 = dark/bright only
         public String outputFormat = "PNG";
         public String referenceTextureIron = "textures/items/iron_ingot";
         public String referenceTextureNetherite = "textures/items/netherite_ingot";
         public String referenceTextureEnderite = "textures/items/enderite_ingot";
+        public String outputMode = OUTPUT_DIRECTORY; // "directory" or "zip"
+        public String outputDirectory = "."; // "." writes variants next to their sources
+        // Not registered by the mod: in zip mode the pack must be enabled in the resource pack screen
+        public String outputPack = "resourcepacks/variantgenerator-generated.zip";
+        // Texture-only tiers generated with the built-in ones, each from its own palette stops (or dark/bright colors)
+        public TierColors[] extraTiers = {};
     }
 
     /**
@@ -60,15 +94,27 @@ public class VariantGeneratorConfig {
      */
     public static class ScanningConfig {
         public boolean enableMissingTextureGeneration = true;
-        public String[] scanPatterns = {
-                "iron_",
-                "iron",
-        };
+        public String[] scanPatterns = ScanPatternMatcher.DEFAULT_PATTERNS.clone(); // matched as whole path tokens
         public String[] excludedMods = {
                 "minecraft",
                 "variantgenerator"
         };
         public boolean scanSubdirectories = true;
+        public boolean modelDiscovery = true; // pick the textures item models use instead of matching file names
+    }
+
+    /**
+     * Generation performance configuration
+     */
+    public static class PerformanceConfig {
+        public boolean parallelGeneration = true;
+        public int generationThreads = 0; // 0 = one per available processor
+        public boolean generationCache = true;
+        public String cacheDirectory = "variantgenerator/cache";
+        public boolean parallelFrames = true; // recolor the frames of animated textures in parallel
+        public int tileThreshold = RowBands.DEFAULT_THRESHOLD; // pixels from which one texture is split across threads, 0 = never
+        public int maxInFlightTextures = 32; // textures read, recolored or written at once; caps generation memory
+        public int ioThreads = WorkerPool.DEFAULT_IO_THREADS; // threads reading sources and writing outputs
     }
 
     // Configuration instances
@@ -76,6 +122,7 @@ public class VariantGeneratorConfig {
     public TextureConfig textureConfig = new TextureConfig();
     public RecipeConfig recipeConfig = new RecipeConfig();
     public ScanningConfig scanningConfig = new ScanningConfig();
+    public PerformanceConfig performanceConfig = new PerformanceConfig();
 
     // Tier color configurations
     public static final TierColors IRON_COLORS = new TierColors(
@@ -121,6 +168,47 @@ public class VariantGeneratorConfig {
         if (textureConfig.textureSize <= 0) {
             throw new IllegalArgumentException("Texture size must be positive");
         }
+        if (textureConfig.paletteStops < 2 || textureConfig.paletteStops > 256) {
+            throw new IllegalArgumentException("Palette stops must be between 2 and 256");
+        }
+        if (!TextureConfig.OUTPUT_DIRECTORY.equalsIgnoreCase(textureConfig.outputMode)
+                && !TextureConfig.OUTPUT_ZIP.equalsIgnoreCase(textureConfig.outputMode)) {
+            throw new IllegalArgumentException("Output mode must be 'directory' or 'zip'");
+        }
+        Set<String> tierNames = new HashSet<>();
+        for (ItemVariantTier tier : ItemVariantTier.values()) {
+            tierNames.add(tier.displayName.toLowerCase(Locale.ROOT));
+        }
+        for (TierColors tier : textureConfig.extraTiers) {
+            if (tier.tierName == null || !tier.tierName.matches("[A-Za-z0-9]+")) {
+                throw new IllegalArgumentException("Extra tier names must be letters and digits only");
+            }
+            if (!tierNames.add(tier.tierName.toLowerCase(Locale.ROOT))) {
+                throw new IllegalArgumentException("Extra tier " + tier.tierName + " is already a tier");
+            }
+            if (tier.stops != null ? tier.stops.size() < 2 : tier.darkColor == null || tier.brightColor == null) {
+                throw new IllegalArgumentException("Extra tier " + tier.tierName + " needs two or more palette stops");
+            }
+        }
+        if (scanningConfig.scanPatterns == null || scanningConfig.scanPatterns.length == 0) {
+            throw new IllegalArgumentException("At least one scan pattern is required");
+        }
+        if (performanceConfig.generationThreads < 0) {
+            throw new IllegalArgumentException("Generation threads must be >= 0");
+        }
+        if (performanceConfig.maxInFlightTextures < 1) {
+            throw new IllegalArgumentException("Max in-flight textures must be >= 1");
+        }
+        if (performanceConfig.ioThreads < 1) {
+            throw new IllegalArgumentException("I/O threads must be >= 1");
+        }
+        if (performanceConfig.tileThreshold < 0) {
+            throw new IllegalArgumentException("Tile threshold must be >= 0");
+        }
+        if (performanceConfig.generationCache
+                && (performanceConfig.cacheDirectory == null || performanceConfig.cacheDirectory.isBlank())) {
+            throw new IllegalArgumentException("Cache directory must be set when the generation cache is enabled");
+        }
         return true;
     }
 }
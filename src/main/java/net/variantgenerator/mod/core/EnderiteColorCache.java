@@ -1,25 +1,70 @@
 package net.variantgenerator.mod.core;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import net.minecraft.item.Item;
 import net.minecraft.registry.Registries;
 import net.minecraft.util.Identifier;
+import net.variantgenerator.mod.texture.GradientLut;
 import net.variantgenerator.mod.texture.TextureColorizer.Pixel;
+import net.variantgenerator.mod.texture.TextureHistogram;
+import net.variantgenerator.mod.texture.TextureRaster;
+import net.variantgenerator.mod.util.ContentHash;
+import net.variantgenerator.mod.util.FileUtils;
+import net.variantgenerator.mod.util.WorkerPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Caches color information extracted from Enderite mod items
  * Used by mixins to provide color data for variant generation
+ *
+ * Tier palettes start as the built-in constants below. On the client, the ingot
+ * sprites are captured at atlas stitch time and analyzed off-thread into
+ * multi-stop palettes, each versioned by the content hash of its sprite. Captured
+ * palettes are stored on disk and loaded before the next generation run; since
+ * generation cache keys include the palette's table hash, a changed reference
+ * regenerates exactly the outputs that depend on it.
  */
 public class EnderiteColorCache {
     private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-ColorCache");
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
     /**
      * Cached Enderite colors
      */
-    private static final Map<String, ColorInfo> COLOR_CACHE = new HashMap<>();
+    private static final Map<String, ColorInfo> COLOR_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Sprites whose pixels define a tier palette, by full sprite identifier
+     * Another namespace's sprite of the same path never replaces a tier palette
+     */
+    private static final Map<String, String> REFERENCE_SPRITES = Map.of(
+            "minecraft:item/iron_ingot", "iron",
+            "minecraft:item/netherite_ingot", "netherite",
+            "enderitemod:item/enderite_ingot", "enderite"
+    );
+
+    private static volatile Path paletteStore;
+    private static volatile int paletteStops = 5;
+
+    /**
+     * Stored form of a captured palette
+     */
+    private static class StoredPalette {
+        String version;
+        int[][] stops;
+    }
 
     /**
      * Default Enderite colors (from analysis)
@@ -47,6 +92,8 @@ public class EnderiteColorCache {
         public Pixel brightColor;
         public Pixel darkColor;
         public float brightness;
+        public List<Pixel> stops; // dark to bright; null uses darkColor and brightColor only
+        public long version; // content hash of the reference texture, 0 for built-in colors
 
         public ColorInfo(String itemName, Pixel bright, Pixel dark) {
             this.itemName = itemName;
@@ -54,6 +101,18 @@ public class EnderiteColorCache {
             this.darkColor = dark;
             this.brightness = (bright.r + bright.g + bright.b) / 3.0f;
         }
+
+        public ColorInfo(String itemName, List<Pixel> stops) {
+            this(itemName, stops.get(stops.size() - 1), stops.get(0));
+            this.stops = List.copyOf(stops);
+        }
+
+        /**
+         * Gets the compiled dark-to-bright gradient table for these colors
+         */
+        public GradientLut gradient() {
+            return stops != null ? GradientLut.of(stops) : GradientLut.of(darkColor, brightColor);
+        }
     }
 
     /**
@@ -67,13 +126,13 @@ public class EnderiteColorCache {
             String itemName = itemId.toString();
 
             if (itemName.contains("enderite_ingot")) {
-                COLOR_CACHE.put("enderite", new ColorInfo("enderite", ENDERITE_BRIGHT, ENDERITE_DARK));
+                COLOR_CACHE.putIfAbsent("enderite", new ColorInfo("enderite", ENDERITE_BRIGHT, ENDERITE_DARK));
                 LOGGER.debug("Cached Enderite ingot colors");
             } else if (itemName.contains("netherite_ingot")) {
-                COLOR_CACHE.put("netherite", new ColorInfo("netherite", NETHERITE_BRIGHT, NETHERITE_DARK));
+                COLOR_CACHE.putIfAbsent("netherite", new ColorInfo("netherite", NETHERITE_BRIGHT, NETHERITE_DARK));
                 LOGGER.debug("Cached Netherite ingot colors");
             } else if (itemName.contains("iron_ingot")) {
-                COLOR_CACHE.put("iron", new ColorInfo("iron", IRON_BRIGHT, IRON_DARK));
+                COLOR_CACHE.putIfAbsent("iron", new ColorInfo("iron", IRON_BRIGHT, IRON_DARK));
                 LOGGER.debug("Cached Iron ingot colors");
             }
         } catch (Exception e) {
@@ -81,6 +140,166 @@ public class EnderiteColorCache {
         }
     }
 
+    /**
+     * Caches a tier's palette from its reference texture (such as its ingot sprite)
+     * The stops come from the texture's luminance quantiles, dark to bright
+     */
+    public static void cacheReferenceColors(String tier, TextureRaster reference, int stops) {
+        TextureHistogram histogram = TextureHistogram.analyze(reference);
+        List<Pixel> colors = histogram.paletteStops(stops);
+        ColorInfo info = new ColorInfo(tier.toLowerCase(Locale.ROOT), colors);
+        info.version = histogram.contentHash;
+        COLOR_CACHE.put(tier.toLowerCase(Locale.ROOT), info);
+        LOGGER.debug("Cached {} reference colors: {}", tier, colors);
+    }
+
+    /**
+     * Sets where captured palettes are stored and how many stops they get
+     */
+    public static void configure(Path store, int stops) {
+        paletteStore = store;
+        paletteStops = stops;
+    }
+
+    /**
+     * Gets the tier whose palette a sprite defines, or null for any other sprite
+     * The sprite is given by its full identifier (namespace:path)
+     */
+    public static String getReferenceTier(String spriteId) {
+        return REFERENCE_SPRITES.get(spriteId);
+    }
+
+    /**
+     * Hands over the pixels of a reference sprite, captured while the atlas loads
+     * The pixels must be a private copy in packed ARGB; analysis runs on the worker
+     * pool so the caller (a sprite loading thread) returns immediately
+     */
+    public static void captureReferenceSprite(String tier, int width, int height, int[] argb) {
+        CompletableFuture.runAsync(() -> analyzeReferenceSprite(tier, new TextureRaster(width, height, argb)), WorkerPool.get())
+                .exceptionally(e -> {
+                    LOGGER.warn("Could not analyze {} reference sprite", tier, e);
+                    return null;
+                });
+    }
+
+    private static void analyzeReferenceSprite(String tier, TextureRaster sprite) {
+        long version = TextureHistogram.contentHash(sprite);
+        ColorInfo current = COLOR_CACHE.get(tier);
+        if (current != null && current.version == version && current.stops != null && current.stops.size() == paletteStops) {
+            LOGGER.debug("{} reference palette unchanged ({})", tier, ContentHash.toHex(version));
+            return;
+        }
+
+        cacheReferenceColors(tier, sprite, paletteStops);
+        LOGGER.info("Captured {} reference palette {}; outputs using it are regenerated on the next generation run",
+                tier, ContentHash.toHex(version));
+        savePalettes();
+    }
+
+    /**
+     * Loads the palettes captured in earlier sessions
+     * Returns the number of tiers loaded
+     */
+    public static int loadPalettes() {
+        Path store = paletteStore;
+        if (store == null || !Files.exists(store)) {
+            return 0;
+        }
+
+        try (Reader reader = Files.newBufferedReader(store, StandardCharsets.UTF_8)) {
+            Map<String, StoredPalette> stored = GSON.fromJson(reader, new TypeToken<Map<String, StoredPalette>>() {}.getType());
+            if (stored == null) {
+                return 0;
+            }
+            int stopCount = paletteStops;
+            int loaded = 0;
+            for (Map.Entry<String, StoredPalette> entry : stored.entrySet()) {
+                ColorInfo info = readPalette(entry.getKey(), entry.getValue(), stopCount);
+                if (info == null) {
+                    // recaptured from the reference sprite once the atlas loads
+                    LOGGER.debug("Skipping stored {} palette: malformed or not {} stops", entry.getKey(), stopCount);
+                    continue;
+                }
+                COLOR_CACHE.put(entry.getKey(), info);
+                loaded++;
+            }
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not read stored reference palettes", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Reads one stored palette, or returns null if it is malformed or has another stop count
+     */
+    private static ColorInfo readPalette(String tier, StoredPalette palette, int stopCount) {
+        if (palette == null || palette.version == null || palette.stops == null || palette.stops.length != stopCount) {
+            return null;
+        }
+        List<Pixel> stops = new ArrayList<>(stopCount);
+        for (int[] stop : palette.stops) {
+            if (stop == null || stop.length < 3 || !isChannel(stop[0]) || !isChannel(stop[1]) || !isChannel(stop[2])) {
+                return null;
+            }
+            stops.add(new Pixel(stop[0], stop[1], stop[2], 255));
+        }
+        long version;
+        try {
+            version = Long.parseUnsignedLong(palette.version, 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        ColorInfo info = new ColorInfo(tier, stops);
+        info.version = version;
+        return info;
+    }
+
+    private static boolean isChannel(int value) {
+        return value >= 0 && value <= 255;
+    }
+
+    private static synchronized void savePalettes() {
+        Path store = paletteStore;
+        if (store == null) {
+            return;
+        }
+
+        Map<String, StoredPalette> stored = new TreeMap<>();
+        COLOR_CACHE.forEach((tier, info) -> {
+            if (info.version != 0 && info.stops != null) {
+                StoredPalette palette = new StoredPalette();
+                palette.version = ContentHash.toHex(info.version);
+                palette.stops = new int[info.stops.size()][];
+                for (int i = 0; i < info.stops.size(); i++) {
+                    Pixel stop = info.stops.get(i);
+                    palette.stops[i] = new int[]{stop.r, stop.g, stop.b};
+                }
+                stored.put(tier, palette);
+            }
+        });
+
+        try {
+            Files.createDirectories(store.toAbsolutePath().getParent());
+            FileUtils.writeAtomically(store, GSON.toJson(stored).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOGGER.warn("Could not store reference palettes", e);
+        }
+    }
+
+    /**
+     * Gets a version identifying the current set of reference palettes (0 while all are built-in)
+     */
+    public static long getVersion() {
+        long version = 0;
+        for (ColorInfo info : new TreeMap<>(COLOR_CACHE).values()) {
+            if (info.version != 0) {
+                version = ContentHash.combine(version, info.version);
+            }
+        }
+        return version;
+    }
+
     /**
      * Gets cached color for a tier
      */
@@ -135,7 +354,7 @@ public class EnderiteColorCache {
     public static void printCacheContents() {
         LOGGER.debug("=== Enderite Color Cache ===");
         COLOR_CACHE.forEach((key, value) ->
-            LOGGER.debug("  {}: bright={}, dark={}", key, value.brightColor, value.darkColor)
+            LOGGER.debug("  {}: bright={}, dark={}, stops={}", key, value.brightColor, value.darkColor, value.stops)
         );
     }
 }
@@ -8,10 +8,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Registry for variant items and their configurations
  * Tracks generated variants and their properties
+ *
+ * Safe for concurrent registration from the parallel generator
  */
 public class VariantRegistry {
     private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-Registry");
@@ -86,9 +90,11 @@ public class VariantRegistry {
         }
     }
 
-    private final Map<String, VariantConfig> registeredVariants = new HashMap<>();
-    private final Map<String, List<VariantConfig>> variantsByMod = new HashMap<>();
-    private final Map<String, List<VariantConfig>> variantsByTier = new HashMap<>();
+    private final Map<String, VariantConfig> registeredVariants = new ConcurrentHashMap<>();
+    // Registration appends from many generator threads, so the per-mod and per-tier
+    // lists are lock-free queues and the getters hand out snapshots
+    private final Map<String, Queue<VariantConfig>> variantsByMod = new ConcurrentHashMap<>();
+    private final Map<String, Queue<VariantConfig>> variantsByTier = new ConcurrentHashMap<>();
 
     /**
      * Registers a variant configuration
@@ -97,8 +103,8 @@ public class VariantRegistry {
         String key = config.sourceModId + ":" + config.baseItemName + ":" + config.tier.name();
         registeredVariants.put(key, config);
 
-        variantsByMod.computeIfAbsent(config.sourceModId, k -> new ArrayList<>()).add(config);
-        variantsByTier.computeIfAbsent(config.tier.name(), k -> new ArrayList<>()).add(config);
+        variantsByMod.computeIfAbsent(config.sourceModId, k -> new ConcurrentLinkedQueue<>()).add(config);
+        variantsByTier.computeIfAbsent(config.tier.name(), k -> new ConcurrentLinkedQueue<>()).add(config);
 
         LOGGER.info("Registered variant: {}", config);
     }
@@ -112,24 +118,26 @@ public class VariantRegistry {
     }
 
     /**
-     * Gets all variants for a specific mod
+     * Gets a snapshot of the variants for a specific mod
      */
     public List<VariantConfig> getVariantsForMod(String modId) {
-        return variantsByMod.getOrDefault(modId, new ArrayList<>());
+        Queue<VariantConfig> variants = variantsByMod.get(modId);
+        return variants == null ? new ArrayList<>() : new ArrayList<>(variants);
     }
 
     /**
-     * Gets all variants of a specific tier
+     * Gets a snapshot of the variants of a specific tier
      */
     public List<VariantConfig> getVariantsForTier(ItemVariantTier tier) {
-        return variantsByTier.getOrDefault(tier.name(), new ArrayList<>());
+        Queue<VariantConfig> variants = variantsByTier.get(tier.name());
+        return variants == null ? new ArrayList<>() : new ArrayList<>(variants);
     }
 
     /**
-     * Gets all registered variants
+     * Gets a snapshot of all registered variants
      */
     public Collection<VariantConfig> getAllVariants() {
-        return registeredVariants.values();
+        return new ArrayList<>(registeredVariants.values());
     }
 
     /**
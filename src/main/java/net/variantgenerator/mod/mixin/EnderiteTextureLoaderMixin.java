@@ -1,8 +1,12 @@
 package net.variantgenerator.mod.mixin;
 
+import net.minecraft.client.texture.NativeImage;
 import net.minecraft.client.texture.SpriteContents;
+import net.minecraft.util.Identifier;
 import net.variantgenerator.mod.core.EnderiteColorCache;
+import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -11,26 +15,56 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Client-side mixin to intercept texture loading from Enderite mod
- * Caches texture data for use in variant generation
+ * Captures the ingot sprites that define the tier palettes
+ *
+ * Sprites are created on the atlas loading threads. For the three reference
+ * sprites the first frame is copied (a few hundred pixels, before the native
+ * image can be freed) and handed to EnderiteColorCache, which analyzes it on the
+ * worker pool. Every other sprite costs a single map lookup.
  */
 @Mixin(SpriteContents.class)
-public class EnderiteTextureLoaderMixin {
+public abstract class EnderiteTextureLoaderMixin {
     private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-Mixin-Textures");
 
+    @Shadow
+    @Final
+    private NativeImage image;
+
+    @Shadow
+    public abstract Identifier getId();
+
+    @Shadow
+    public abstract int getWidth();
+
+    @Shadow
+    public abstract int getHeight();
+
     /**
-     * Hooks into sprite (texture) initialization to cache Enderite textures
+     * Hooks into sprite (texture) initialization to capture reference sprites
      */
     @Inject(method = "<init>", at = @At("TAIL"))
     private void onSpriteLoad(CallbackInfo ci) {
         try {
-            SpriteContents sprite = (SpriteContents) (Object) this;
+            String tier = EnderiteColorCache.getReferenceTier(getId().toString());
+            if (tier == null) {
+                return;
+            }
 
-            // Cache Enderite texture information for color extraction
-            // This allows the variant generator to use the actual rendered colors
-            LOGGER.debug("Tracked texture sprite initialization");
+            // First frame only; NativeImage colors are ABGR
+            int width = getWidth();
+            int height = getHeight();
+            int[] argb = new int[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int abgr = image.getColor(x, y);
+                    argb[y * width + x] = (abgr & 0xFF00FF00) | ((abgr & 0xFF) << 16) | ((abgr >> 16) & 0xFF);
+                }
+            }
 
+            EnderiteColorCache.captureReferenceSprite(tier, width, height, argb);
+            LOGGER.debug("Captured {} reference sprite {}", tier, getId());
         } catch (Exception e) {
-            LOGGER.debug("Could not track sprite initialization", e);
+            LOGGER.debug("Could not capture reference sprite", e);
         }
     }
 }
@@ -0,0 +1,123 @@
+package net.variantgenerator.mod.mixin;
+
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.client.texture.SpriteContents;
+import net.minecraft.util.Identifier;
+import net.variantgenerator.mod.texture.SpriteMipmaps;
+import net.variantgenerator.mod.texture.TextureHistogram;
+import net.variantgenerator.mod.texture.TextureRaster;
+import net.variantgenerator.mod.util.ContentHash;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client-side mixin feeding generated mip chains to the atlas
+ *
+ * When the atlas is stitched every sprite builds its mip levels. A sprite the
+ * generator produced already has them, built with the rest of its texture and
+ * kept in the generation cache across launches, so its levels are taken from
+ * SpriteMipmaps instead. A sprite falls back to the game's own levels when it
+ * has no chain deep enough for the mipmap setting, is animated, or its pixels
+ * are not the ones the chain was built from (a resource pack replaced it).
+ * That check reads the sprite once, a row at a time, which is less than the
+ * game's own filter reads; the levels themselves are ready to copy in.
+ */
+@Mixin(SpriteContents.class)
+public abstract class GeneratedSpriteMipmapMixin {
+    private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-Mixin-Mipmaps");
+
+    @Shadow
+    @Final
+    private NativeImage image;
+
+    @Shadow
+    private NativeImage[] mipmapLevelsImages;
+
+    @Shadow
+    public abstract Identifier getId();
+
+    @Shadow
+    public abstract int getWidth();
+
+    @Shadow
+    public abstract int getHeight();
+
+    /**
+     * Hooks into mip level generation to use the generated chain of a sprite
+     */
+    @Inject(method = "generateMipmaps", at = @At("HEAD"), cancellable = true)
+    private void onGenerateMipmaps(int mipmapLevels, CallbackInfo ci) {
+        if (mipmapLevels <= 0) {
+            return;
+        }
+        SpriteMipmaps.Chain chain = SpriteMipmaps.get(getId().toString());
+        int width = getWidth();
+        int height = getHeight();
+        // Animated sprites hold every frame in their image; their frames are mipmapped by the game
+        if (chain == null || chain.depth() < mipmapLevels || image.getWidth() != width || image.getHeight() != height) {
+            return;
+        }
+
+        if (contentHash(image, width, height) != chain.baseHash()) {
+            LOGGER.debug("Sprite {} differs from its generated texture, building its own mip levels", getId());
+            return;
+        }
+
+        NativeImage[] levels = new NativeImage[mipmapLevels + 1];
+        levels[0] = image;
+        try {
+            for (int level = 1; level <= mipmapLevels; level++) {
+                TextureRaster raster = chain.level(level);
+                if (raster.width != width >> level || raster.height != height >> level) {
+                    throw new IllegalStateException("Mip level " + level + " is " + raster.width + "x" + raster.height);
+                }
+                levels[level] = toNativeImage(raster);
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not use the generated mip levels of {}", getId(), e);
+            for (int level = 1; level < levels.length; level++) {
+                if (levels[level] != null) {
+                    levels[level].close();
+                }
+            }
+            return;
+        }
+
+        mipmapLevelsImages = levels;
+        ci.cancel();
+    }
+
+    /**
+     * Hashes a native image as TextureHistogram.contentHash hashes the same pixels in ARGB
+     * NativeImage colors are ABGR; rows are converted and hashed one at a time
+     */
+    private static long contentHash(NativeImage image, int width, int height) {
+        ContentHash.IntHasher hasher = ContentHash.ints((long) width * height);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int abgr = image.getColor(x, y);
+                row[x] = (abgr & 0xFF00FF00) | ((abgr & 0xFF) << 16) | ((abgr >> 16) & 0xFF);
+            }
+            hasher.update(row, 0, width);
+        }
+        return TextureHistogram.contentHash(width, height, hasher.finish());
+    }
+
+    private static NativeImage toNativeImage(TextureRaster raster) {
+        NativeImage image = new NativeImage(raster.width, raster.height, false);
+        for (int y = 0; y < raster.height; y++) {
+            for (int x = 0; x < raster.width; x++) {
+                int argb = raster.pixels[y * raster.width + x];
+                image.setColor(x, y, (argb & 0xFF00FF00) | ((argb & 0xFF) << 16) | ((argb >> 16) & 0xFF));
+            }
+        }
+        return image;
+    }
+}
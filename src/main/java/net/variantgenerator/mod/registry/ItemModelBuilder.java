@@ -7,9 +7,11 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 /**
  * Generates item model JSON files for variants
@@ -45,6 +47,45 @@ public class ItemModelBuilder {
         return model;
     }
 
+    /**
+     * Creates an item model with a given parent and one texture per layer
+     */
+    public static JsonObject createLayeredItemModel(String parent, List<String> layers) {
+        JsonObject model = new JsonObject();
+        model.addProperty("parent", parent);
+
+        JsonObject textures = new JsonObject();
+        for (int layer = 0; layer < layers.size(); layer++) {
+            textures.addProperty("layer" + layer, layers.get(layer));
+        }
+
+        model.add("textures", textures);
+        return model;
+    }
+
+    /**
+     * Creates the item model for an item, handheld for tools and simple otherwise
+     */
+    public static JsonObject createItemModel(String itemName, String texturePath) {
+        return isTool(itemName) ? createHandheldItemModel(texturePath) : createSimpleItemModel(texturePath);
+    }
+
+    /**
+     * Checks whether an item name looks like a tool or weapon held in hand
+     */
+    public static boolean isTool(String itemName) {
+        String name = itemName.toLowerCase();
+        return name.endsWith("_sword") || name.endsWith("_pickaxe") || name.endsWith("_axe")
+                || name.endsWith("_shovel") || name.endsWith("_hoe");
+    }
+
+    /**
+     * Serializes a model to UTF-8 JSON bytes
+     */
+    public static byte[] toBytes(JsonObject model) {
+        return model.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * Saves a model to a JSON file
      */
@@ -0,0 +1,150 @@
+package net.variantgenerator.mod.texture;
+
+import net.variantgenerator.mod.util.ContentHash;
+import net.variantgenerator.mod.util.WorkerPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Colorizes animated textures (vertical frame strips) a batch of frames at a time
+ *
+ * The strip is decoded row by row, each batch of frames is recolored into every
+ * palette and streamed straight into one PNG writer per palette, so peak memory
+ * is a few frames per palette instead of the whole strip per palette. The source
+ * is read twice: once to collect its colors and hash, once to recolor. Output
+ * pixels are identical to recoloring the whole strip at once.
+ */
+public final class AnimatedTextureColorizer {
+    // Pixels decoded per batch; a single larger frame still goes through on its own
+    private static final int BATCH_PIXELS = 64 * 1024;
+
+    private AnimatedTextureColorizer() {
+    }
+
+    /**
+     * What the first pass learns about a strip
+     */
+    public static final class StripInfo {
+        public final int width;
+        public final int height;
+        public final int frameHeight;
+        public final long contentHash;
+
+        final int[] palette; // distinct colors, or null past 256
+        final boolean opaque;
+
+        StripInfo(int width, int height, long contentHash, int[] palette, boolean opaque) {
+            this.width = width;
+            this.height = height;
+            // Frames are square unless the strip cannot be split that way
+            this.frameHeight = height % width == 0 ? width : height;
+            this.contentHash = contentHash;
+            this.palette = palette;
+            this.opaque = opaque;
+        }
+
+        public int frameCount() {
+            return height / frameHeight;
+        }
+
+        int framesPerBatch() {
+            return Math.max(1, BATCH_PIXELS / (width * frameHeight));
+        }
+    }
+
+    /**
+     * Reads a strip once to compute its content hash (as TextureHistogram.contentHash) and colors
+     */
+    public static StripInfo scan(ByteBuffer png) throws IOException {
+        try (PngDecoder.RowReader reader = PngDecoder.rows(png.duplicate())) {
+            int width = reader.header.width;
+            int height = reader.header.height;
+            ContentHash.IntHasher hash = ContentHash.ints((long) width * height);
+            PngEncoder.PaletteCollector colors = new PngEncoder.PaletteCollector();
+
+            int batchRows = Math.max(1, BATCH_PIXELS / width);
+            int[] rows = new int[batchRows * width];
+            while (reader.remainingRows() > 0) {
+                int count = Math.min(batchRows, reader.remainingRows());
+                reader.readRows(rows, 0, count);
+                hash.update(rows, 0, count * width);
+                colors.add(rows, 0, count * width);
+            }
+
+            long contentHash = TextureHistogram.contentHash(width, height, hash.finish());
+            return new StripInfo(width, height, contentHash, colors.palette(), colors.opaque());
+        }
+    }
+
+    /**
+     * Recolors a strip into every palette and returns one PNG per palette
+     * With parallel set, the frames of each batch are recolored on the worker pool
+     */
+    public static byte[][] recolor(ByteBuffer png, StripInfo info, List<GradientLut> gradients, boolean parallel) throws IOException {
+        int tierCount = gradients.size();
+        int[][] tables = new int[tierCount][];
+        for (int t = 0; t < tierCount; t++) {
+            tables[t] = gradients.get(t).table();
+        }
+
+        // An indexed source stays indexed: its palette mapped through each gradient is the tier's palette
+        int[][] tierColors = new int[tierCount][];
+        if (info.palette != null) {
+            for (int t = 0; t < tierCount; t++) {
+                tierColors[t] = new int[info.palette.length];
+            }
+            PixelKernels.get().recolorAll(info.palette, tierColors, 0, info.palette.length, tables);
+        }
+
+        ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[tierCount];
+        PngEncoder.RowWriter[] writers = new PngEncoder.RowWriter[tierCount];
+        for (int t = 0; t < tierCount; t++) {
+            outputs[t] = new ByteArrayOutputStream();
+            writers[t] = PngEncoder.rows(outputs[t], info.width, info.height, tierColors[t], info.opaque);
+        }
+
+        int framePixels = info.width * info.frameHeight;
+        int framesPerBatch = info.framesPerBatch();
+        int[] source = new int[framesPerBatch * framePixels];
+        int[][] results = new int[tierCount][source.length];
+
+        try (PngDecoder.RowReader reader = PngDecoder.rows(png.duplicate())) {
+            for (int frame = 0; frame < info.frameCount(); frame += framesPerBatch) {
+                int frames = Math.min(framesPerBatch, info.frameCount() - frame);
+                reader.readRows(source, 0, frames * info.frameHeight);
+                recolorFrames(source, results, tables, frames, framePixels, parallel);
+
+                for (int t = 0; t < tierCount; t++) {
+                    writers[t].writeRows(results[t], 0, frames * info.frameHeight);
+                }
+            }
+        }
+
+        byte[][] encoded = new byte[tierCount][];
+        for (int t = 0; t < tierCount; t++) {
+            writers[t].finish();
+            encoded[t] = outputs[t].toByteArray();
+        }
+        return encoded;
+    }
+
+    private static void recolorFrames(int[] source, int[][] results, int[][] tables, int frames, int framePixels, boolean parallel) {
+        PixelKernel kernel = PixelKernels.get();
+        if (!parallel || frames == 1) {
+            kernel.recolorAll(source, results, 0, frames * framePixels, tables);
+            return;
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(frames);
+        for (int f = 0; f < frames; f++) {
+            int from = f * framePixels;
+            tasks.add(ForkJoinTask.adapt(() -> kernel.recolorAll(source, results, from, from + framePixels, tables)));
+        }
+        WorkerPool.get().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+}
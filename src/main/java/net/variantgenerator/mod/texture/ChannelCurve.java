@@ -0,0 +1,123 @@
+package net.variantgenerator.mod.texture;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Per-channel transfer function compiled into a 256-entry table
+ *
+ * Any curve that maps a channel value to a channel value (gamma, brightness,
+ * contrast, levels...) only has 256 possible inputs, so it is evaluated once
+ * per input and applied with three array loads per pixel. Recently used curves
+ * are cached by key, so a parameter set used across many textures is compiled
+ * once.
+ */
+public final class ChannelCurve implements PixelOp {
+    private record GammaBrightnessKey(float gamma, float brightness) {
+    }
+
+    private static final int MAX_CACHED = 256;
+    private static final Map<Object, ChannelCurve> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, ChannelCurve> eldest) {
+                    return size() > MAX_CACHED;
+                }
+            });
+
+    private final int[] table;
+
+    private ChannelCurve(int[] table) {
+        this.table = table;
+    }
+
+    /**
+     * Gets the gamma-then-brightness curve for a parameter pair
+     */
+    public static ChannelCurve gammaBrightness(float gamma, float brightness) {
+        return of(new GammaBrightnessKey(gamma, brightness), value -> {
+            float normalized = value / 255.0f;
+            float gammaApplied = (float) Math.pow(normalized, 1.0f / Math.max(0.1f, gamma));
+            float brightened = gammaApplied * brightness;
+            return Math.round(brightened * 255);
+        });
+    }
+
+    /**
+     * Gets a cached curve, compiling the function on first use of the key
+     * The key must identify the function's parameters (a record works well)
+     */
+    public static ChannelCurve of(Object key, IntUnaryOperator function) {
+        ChannelCurve cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        ChannelCurve curve = compile(function);
+        CACHE.put(key, curve);
+        return curve;
+    }
+
+    /**
+     * Compiles a function into an uncached curve; results are clamped to 0-255
+     */
+    public static ChannelCurve compile(IntUnaryOperator function) {
+        int[] table = new int[256];
+        for (int value = 0; value < 256; value++) {
+            table[value] = Math.max(0, Math.min(255, function.applyAsInt(value)));
+        }
+        return new ChannelCurve(table);
+    }
+
+    /**
+     * Maps a single channel value
+     */
+    public int map(int value) {
+        return table[value & 0xFF];
+    }
+
+    /**
+     * Maps every channel of a non-transparent pixel; transparent pixels are returned unchanged
+     */
+    @Override
+    public int apply(int argb) {
+        if ((argb >>> 24) == 0) {
+            return argb;
+        }
+        return (argb & 0xFF000000)
+                | (table[(argb >> 16) & 0xFF] << 16)
+                | (table[(argb >> 8) & 0xFF] << 8)
+                | table[argb & 0xFF];
+    }
+
+    /**
+     * Maps the pixels of [from, to) on the selected pixel kernel
+     */
+    @Override
+    public void apply(int[] src, int[] dst, int from, int to) {
+        PixelKernels.get().mapChannels(src, dst, from, to, table);
+    }
+
+    /**
+     * Gets the raw table (256 entries in 0-255, must not be modified)
+     */
+    public int[] table() {
+        return table;
+    }
+
+    /**
+     * Gets the number of cached curves
+     */
+    public static int getCacheSize() {
+        return CACHE.size();
+    }
+
+    /**
+     * Clears the cached curves
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+}
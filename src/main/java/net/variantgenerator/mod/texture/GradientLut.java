@@ -0,0 +1,141 @@
+package net.variantgenerator.mod.texture;
+
+import net.variantgenerator.mod.texture.TextureColorizer.Pixel;
+import net.variantgenerator.mod.util.ContentHash;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precompiled gradient lookup table for grayscale recoloring
+ *
+ * A grayscale pixel only has 256 possible values, so a palette is compiled once
+ * into a table holding the packed RGB (alpha bits clear) for every value. A
+ * palette is two or more color stops spread evenly from grayscale 0 to 255, so
+ * a many-stop palette costs the same per pixel as a plain dark-to-bright lerp.
+ * Tables are cached by palette content: a changed palette compiles a new table,
+ * an unchanged one is shared by every texture of that tier.
+ */
+public final class GradientLut {
+    private static final Map<Long, GradientLut> CACHE = new ConcurrentHashMap<>();
+    private static final Map<List<Integer>, GradientLut> STOP_CACHE = new ConcurrentHashMap<>();
+    private static final int MAX_STOPS = 256;
+
+    private final int[] table;
+    private final long contentHash;
+
+    private GradientLut(int[] table) {
+        this.table = table;
+        this.contentHash = ContentHash.hash(table, table.length);
+    }
+
+    /**
+     * Gets the table mapping grayscale 0 to the dark color and 255 to the bright color
+     */
+    public static GradientLut of(Pixel dark, Pixel bright) {
+        int darkRGB = packRGB(dark);
+        int brightRGB = packRGB(bright);
+        long key = ((long) darkRGB << 24) | brightRGB;
+        return CACHE.computeIfAbsent(key, k -> compile(new int[]{darkRGB, brightRGB}));
+    }
+
+    /**
+     * Gets the table for color stops ordered from dark to bright, spread evenly over 0-255
+     * Two stops give exactly the same table as of(dark, bright)
+     */
+    public static GradientLut of(List<Pixel> stops) {
+        if (stops.size() < 2 || stops.size() > MAX_STOPS) {
+            throw new IllegalArgumentException("A palette needs 2 to " + MAX_STOPS + " stops, got " + stops.size());
+        }
+        if (stops.size() == 2) {
+            return of(stops.get(0), stops.get(1));
+        }
+
+        int[] colors = new int[stops.size()];
+        List<Integer> key = new ArrayList<>(colors.length);
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = packRGB(stops.get(i));
+            key.add(colors[i]);
+        }
+        return STOP_CACHE.computeIfAbsent(key, k -> compile(colors));
+    }
+
+    /**
+     * Compiles evenly spaced stops, interpolating each segment with the same
+     * float lerp as the original two-stop gradient
+     */
+    private static GradientLut compile(int[] colors) {
+        int segments = colors.length - 1;
+        int[] positions = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            positions[i] = i * 255 / segments;
+        }
+
+        int[] table = new int[256];
+        int segment = 0;
+        for (int value = 0; value < 256; value++) {
+            while (segment < segments - 1 && value > positions[segment + 1]) {
+                segment++;
+            }
+            int start = positions[segment];
+            int end = positions[segment + 1];
+            int from = colors[segment];
+            int to = colors[segment + 1];
+            int fromR = (from >> 16) & 0xFF, fromG = (from >> 8) & 0xFF, fromB = from & 0xFF;
+            int toR = (to >> 16) & 0xFF, toG = (to >> 8) & 0xFF, toB = to & 0xFF;
+
+            float t = (value - start) / (float) (end - start);
+            int r = (int) (fromR + t * (toR - fromR));
+            int g = (int) (fromG + t * (toG - fromG));
+            int b = (int) (fromB + t * (toB - fromB));
+            table[value] = (r << 16) | (g << 8) | b;
+        }
+        return new GradientLut(table);
+    }
+
+    /**
+     * Maps a grayscale pixel through the table, keeping its alpha
+     */
+    public int map(int argb) {
+        return (argb & 0xFF000000) | table[argb & 0xFF];
+    }
+
+    /**
+     * Gets the raw table (256 packed RGB entries, must not be modified)
+     */
+    public int[] table() {
+        return table;
+    }
+
+    /**
+     * Gets a hash of the table contents, identifying the palette in persistent cache keys
+     */
+    public long contentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Gets the number of compiled palettes
+     */
+    public static int getCacheSize() {
+        return CACHE.size() + STOP_CACHE.size();
+    }
+
+    /**
+     * Clears the compiled palette cache
+     */
+    public static void clearCache() {
+        CACHE.clear();
+        STOP_CACHE.clear();
+    }
+
+    private static int packRGB(Pixel pixel) {
+        return (clamp(pixel.r) << 16) | (clamp(pixel.g) << 8) | clamp(pixel.b);
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
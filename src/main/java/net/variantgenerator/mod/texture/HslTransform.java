@@ -0,0 +1,201 @@
+package net.variantgenerator.mod.texture;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fixed-point HSL transform engine
+ *
+ * Hue is held in 1/256ths of a 60-degree sector (0-1535 for a full turn),
+ * saturation and lightness in 1/4096ths. Divisions by the per-pixel chroma and
+ * lightness denominators go through a shared reciprocal table, and all
+ * parameter-dependent work (hue shift, saturation scale, lightness offset) is
+ * precomputed into tables. Recently used transforms are cached per parameter
+ * set, so the same adjustment applied to thousands of textures compiles its
+ * tables once.
+ */
+public final class HslTransform implements PixelOp {
+    private static final int SECTOR = 256;
+    private static final int HUE_ONE = 6 * SECTOR;
+    private static final int ONE_SHIFT = 12;
+    private static final int ONE = 1 << ONE_SHIFT;
+
+    // RECIPROCAL[n] = ceil(2^32 / n), exact for the 21-bit numerators used here
+    private static final long[] RECIPROCAL = new long[511];
+
+    static {
+        for (int n = 1; n < RECIPROCAL.length; n++) {
+            RECIPROCAL[n] = ((1L << 32) + n - 1) / n;
+        }
+    }
+
+    private record Key(float hueShift, float saturation, float lightness) {
+    }
+
+    // Each transform holds about 24 KB of tables
+    private static final int MAX_CACHED = 64;
+    private static final Map<Key, HslTransform> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, HslTransform> eldest) {
+                    return size() > MAX_CACHED;
+                }
+            });
+
+    private final int[] hueTable = new int[HUE_ONE + 1];
+    private final int[] saturationTable = new int[ONE + 1];
+    private final int[] lightnessTable = new int[511];
+
+    private HslTransform(float hueShift, float saturation, float lightness) {
+        // Hue shift in fixed-point hue units, normalized into [0, HUE_ONE)
+        int shift = Math.round(hueShift / 360.0f * HUE_ONE) % HUE_ONE;
+        if (shift < 0) {
+            shift += HUE_ONE;
+        }
+        for (int h = 0; h <= HUE_ONE; h++) {
+            int shifted = h + shift;
+            while (shifted >= HUE_ONE) {
+                shifted -= HUE_ONE;
+            }
+            hueTable[h] = shifted;
+        }
+
+        for (int s = 0; s <= ONE; s++) {
+            saturationTable[s] = clamp(Math.round(s * saturation), 0, ONE);
+        }
+
+        // Indexed by max + min of the 8-bit channels (0-510)
+        for (int sum = 0; sum < lightnessTable.length; sum++) {
+            float l = sum / 510.0f + lightness;
+            lightnessTable[sum] = clamp(Math.round(l * ONE), 0, ONE);
+        }
+    }
+
+    /**
+     * Gets the transform for a parameter set, compiling its tables on first use
+     */
+    public static HslTransform of(float hueShift, float saturation, float lightness) {
+        Key key = new Key(hueShift, saturation, lightness);
+        HslTransform cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        HslTransform transform = new HslTransform(hueShift, saturation, lightness);
+        CACHE.put(key, transform);
+        return transform;
+    }
+
+    /**
+     * Transforms the non-transparent pixels of [from, to); transparent pixels are copied
+     */
+    @Override
+    public void apply(int[] src, int[] dst, int from, int to) {
+        for (int i = from; i < to; i++) {
+            dst[i] = apply(src[i]);
+        }
+    }
+
+    /**
+     * Transforms a single packed ARGB pixel; transparent pixels are returned unchanged
+     */
+    @Override
+    public int apply(int argb) {
+        if ((argb >>> 24) == 0) {
+            return argb;
+        }
+
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        int lightnessSum = max + min;
+        int l = lightnessTable[lightnessSum];
+
+        int h = 0;
+        int s = 0;
+        int chroma = max - min;
+        if (chroma != 0) {
+            int denominator = lightnessSum > 255 ? 510 - lightnessSum : lightnessSum;
+            s = saturationTable[divide(chroma << ONE_SHIFT, denominator)];
+
+            if (max == r) {
+                h = divide((g - b) * SECTOR, chroma);
+                if (h < 0) {
+                    h += HUE_ONE;
+                }
+            } else if (max == g) {
+                h = 2 * SECTOR + divide((b - r) * SECTOR, chroma);
+            } else {
+                h = 4 * SECTOR + divide((r - g) * SECTOR, chroma);
+            }
+            h = hueTable[h];
+        }
+
+        int rgb;
+        if (s == 0) {
+            int v = toChannel(l);
+            rgb = (v << 16) | (v << 8) | v;
+        } else {
+            int q = l < ONE / 2 ? (l * (ONE + s)) >> ONE_SHIFT : l + s - ((l * s) >> ONE_SHIFT);
+            int p = 2 * l - q;
+            rgb = (toChannel(hueToChannel(p, q, h + 2 * SECTOR)) << 16)
+                    | (toChannel(hueToChannel(p, q, h)) << 8)
+                    | toChannel(hueToChannel(p, q, h - 2 * SECTOR));
+        }
+
+        return (argb & 0xFF000000) | rgb;
+    }
+
+    /**
+     * Gets the number of compiled parameter sets
+     */
+    public static int getCacheSize() {
+        return CACHE.size();
+    }
+
+    /**
+     * Clears the compiled parameter sets
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    private static int hueToChannel(int p, int q, int t) {
+        if (t < 0) {
+            t += HUE_ONE;
+        } else if (t >= HUE_ONE) {
+            t -= HUE_ONE;
+        }
+
+        if (t < SECTOR) {
+            return p + (((q - p) * t) >> 8);
+        }
+        if (t < 3 * SECTOR) {
+            return q;
+        }
+        if (t < 4 * SECTOR) {
+            return p + (((q - p) * (4 * SECTOR - t)) >> 8);
+        }
+        return p;
+    }
+
+    /**
+     * Divides a signed numerator by 1-510 via the reciprocal table, truncating toward zero
+     */
+    private static int divide(int numerator, int denominator) {
+        long quotient = (Math.abs((long) numerator) * RECIPROCAL[denominator]) >>> 32;
+        return numerator < 0 ? -(int) quotient : (int) quotient;
+    }
+
+    private static int toChannel(int value) {
+        return clamp((value * 255 + ONE / 2) >> ONE_SHIFT, 0, 255);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,76 @@
+package net.variantgenerator.mod.texture;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Converts between BufferedImage and TextureRaster
+ *
+ * Reads the whole image with one bulk call instead of a getRGB call per pixel,
+ * and shares the backing int[] directly when the image is already TYPE_INT_ARGB
+ */
+public final class ImageRasters {
+    private static final int[] ARGB_MASKS = {0x00FF0000, 0x0000FF00, 0x000000FF, 0xFF000000};
+
+    private ImageRasters() {
+    }
+
+    /**
+     * Reads an image into a raster
+     * When the image is a plain TYPE_INT_ARGB image its pixel array is shared,
+     * so the returned raster must be treated as read-only
+     */
+    public static TextureRaster read(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        int[] shared = directPixels(image);
+        if (shared != null) {
+            return new TextureRaster(width, height, shared);
+        }
+
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        return new TextureRaster(width, height, pixels);
+    }
+
+    /**
+     * Wraps a raster in a TYPE_INT_ARGB image without copying the pixels
+     */
+    public static BufferedImage toImage(TextureRaster raster) {
+        DataBufferInt buffer = new DataBufferInt(raster.pixels, raster.pixelCount());
+        WritableRaster writable = Raster.createPackedRaster(buffer, raster.width, raster.height,
+                raster.width, ARGB_MASKS, null);
+        return new BufferedImage(ColorModel.getRGBdefault(), writable, false, null);
+    }
+
+    /**
+     * Gets the backing pixel array of a TYPE_INT_ARGB image, or null if the
+     * image layout does not match a plain row-major ARGB buffer
+     */
+    private static int[] directPixels(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            return null;
+        }
+
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        if (raster.getParent() != null
+                || raster.getSampleModelTranslateX() != 0
+                || raster.getSampleModelTranslateY() != 0
+                || !(buffer instanceof DataBufferInt intBuffer)
+                || intBuffer.getNumBanks() != 1
+                || intBuffer.getOffset() != 0
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel)
+                || sampleModel.getScanlineStride() != image.getWidth()) {
+            return null;
+        }
+
+        int[] pixels = intBuffer.getData();
+        return pixels.length >= image.getWidth() * image.getHeight() ? pixels : null;
+    }
+}
@@ -0,0 +1,42 @@
+package net.variantgenerator.mod.texture;
+
+/**
+ * Per-pixel colorization kernels over packed ARGB arrays
+ *
+ * Every method processes the index range [from, to) of src into dst.
+ * Implementations must produce identical output for identical input.
+ */
+public interface PixelKernel {
+
+    /**
+     * Maps grayscale pixels through a 256-entry RGB table, keeping alpha
+     * Non-grayscale pixels are copied unchanged
+     *
+     * @return the number of pixels that were recolored
+     */
+    int recolor(int[] src, int[] dst, int from, int to, int[] table);
+
+    /**
+     * Maps grayscale pixels through several tables at once, one output per table
+     *
+     * @return the number of pixels that were recolored
+     */
+    int recolorAll(int[] src, int[][] dst, int from, int to, int[][] tables);
+
+    /**
+     * Maps opaque grayscale pixels through a 256-entry RGB table, keeping alpha
+     * Transparent and non-grayscale pixels are copied unchanged
+     */
+    void recolorOpaque(int[] src, int[] dst, int from, int to, int[] table);
+
+    /**
+     * Maps each color channel of non-transparent pixels through a 256-entry table
+     * whose entries are in 0-255. Transparent pixels are copied unchanged
+     */
+    void mapChannels(int[] src, int[] dst, int from, int to, int[] table);
+
+    /**
+     * Gets a short name for logging
+     */
+    String name();
+}
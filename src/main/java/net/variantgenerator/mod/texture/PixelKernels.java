@@ -0,0 +1,79 @@
+package net.variantgenerator.mod.texture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selects the pixel kernel implementation at runtime
+ *
+ * The vector kernel is used when the JVM was started with
+ * --add-modules jdk.incubator.vector and the CPU offers at least four int lanes.
+ * Otherwise, or when -Dvariantgenerator.vectorKernels=false is set, the scalar
+ * kernel is used. Both produce identical output.
+ *
+ * The vector kernel lives in its own source set (src/vector/java), the only one
+ * compiled against the incubating module, so it is loaded by name.
+ */
+public final class PixelKernels {
+    private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-Kernels");
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "net.variantgenerator.mod.texture.VectorPixelKernel";
+
+    /**
+     * Version of the kernel output, part of the generation cache key
+     * Bump it whenever a change alters the pixels any kernel produces
+     */
+    public static final int VERSION = 1;
+
+    private static final PixelKernel SELECTED = select();
+
+    private PixelKernels() {
+    }
+
+    /**
+     * Gets the best available kernel
+     */
+    public static PixelKernel get() {
+        return SELECTED;
+    }
+
+    /**
+     * Gets the portable scalar kernel
+     */
+    public static PixelKernel scalar() {
+        return ScalarPixelKernel.INSTANCE;
+    }
+
+    private static PixelKernel select() {
+        if (!Boolean.parseBoolean(System.getProperty("variantgenerator.vectorKernels", "true"))) {
+            LOGGER.info("Vector kernels disabled, using scalar kernels");
+            return ScalarPixelKernel.INSTANCE;
+        }
+        PixelKernel kernel = vector();
+        if (kernel == null) {
+            return ScalarPixelKernel.INSTANCE;
+        }
+        LOGGER.info("Using {} pixel kernels", kernel.name());
+        return kernel;
+    }
+
+    /**
+     * Gets the vector kernel, or null if the module is missing or vectorizing is not worthwhile here
+     */
+    static PixelKernel vector() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            LOGGER.debug("{} not available, using scalar kernels", VECTOR_MODULE);
+            return null;
+        }
+
+        try {
+            Class<?> type = Class.forName(VECTOR_KERNEL);
+            if ((boolean) type.getDeclaredMethod("isWorthwhile").invoke(null)) {
+                return (PixelKernel) type.getDeclaredConstructor().newInstance();
+            }
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.debug("Could not load vector kernels", e);
+        }
+        return null;
+    }
+}
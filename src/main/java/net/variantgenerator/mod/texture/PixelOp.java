@@ -0,0 +1,25 @@
+package net.variantgenerator.mod.texture;
+
+/**
+ * A per-pixel operation on packed ARGB values
+ *
+ * Because each output pixel depends only on the same input pixel, consecutive
+ * operations can be fused into a single pass by TextureRecipe.
+ */
+public interface PixelOp {
+
+    /**
+     * Transforms a single packed ARGB pixel
+     */
+    int apply(int argb);
+
+    /**
+     * Transforms the pixels of [from, to) from src into dst
+     * Implementations may override this with a bulk or vectorized kernel
+     */
+    default void apply(int[] src, int[] dst, int from, int to) {
+        for (int i = from; i < to; i++) {
+            dst[i] = apply(src[i]);
+        }
+    }
+}
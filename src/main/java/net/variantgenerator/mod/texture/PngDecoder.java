@@ -0,0 +1,567 @@
+package net.variantgenerator.mod.texture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Pure-Java PNG decoder producing a TextureRaster
+ *
+ * Decodes every standard PNG layout (grayscale, RGB, indexed, gray+alpha and
+ * RGBA at all legal bit depths, with tRNS transparency and Adam7 interlacing)
+ * straight into packed ARGB without touching AWT, the ImageIO plugin registry
+ * or color management. Like the game's own texture loader, gamma and color
+ * profile chunks are ignored, and so are chunk CRCs: a texture the game renders
+ * must not be rejected here. Corrupt image data still fails, through zlib's
+ * own checks and the size and filter checks below.
+ */
+public final class PngDecoder {
+    private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+
+    private static final int TYPE_IHDR = chunkType("IHDR");
+    private static final int TYPE_PLTE = chunkType("PLTE");
+    private static final int TYPE_TRNS = chunkType("tRNS");
+    private static final int TYPE_IDAT = chunkType("IDAT");
+    private static final int TYPE_IEND = chunkType("IEND");
+
+    // Adam7 pass origins and steps
+    private static final int[] PASS_X = {0, 4, 0, 2, 0, 1, 0};
+    private static final int[] PASS_Y = {0, 0, 4, 0, 2, 0, 1};
+    private static final int[] PASS_DX = {8, 8, 4, 4, 2, 2, 1};
+    private static final int[] PASS_DY = {8, 8, 8, 4, 4, 2, 2};
+
+    // Largest inflated image accepted, far beyond any texture; keeps a crafted header from allocating gigabytes
+    private static final long MAX_IMAGE_DATA = 1L << 30;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    /**
+     * Image header and transparency information
+     */
+    public static final class Header {
+        public final int width;
+        public final int height;
+        public final int bitDepth;
+        public final int colorType;
+        public final boolean interlaced;
+
+        int[] palette = new int[0];
+        int transparentGray = -1;
+        int transparentRGB = -1;
+        int[] transparentKey16;
+
+        Header(int width, int height, int bitDepth, int colorType, boolean interlaced) {
+            this.width = width;
+            this.height = height;
+            this.bitDepth = bitDepth;
+            this.colorType = colorType;
+            this.interlaced = interlaced;
+        }
+
+        int channels() {
+            return switch (colorType) {
+                case 0, 3 -> 1;
+                case 2 -> 3;
+                case 4 -> 2;
+                default -> 4;
+            };
+        }
+
+        int bitsPerPixel() {
+            return channels() * bitDepth;
+        }
+
+        int filterStride() {
+            return Math.max(1, bitsPerPixel() / 8);
+        }
+
+        int rowBytes(int pixels) {
+            return (int) rowBytesLong(pixels);
+        }
+
+        long rowBytesLong(int pixels) {
+            return ((long) pixels * bitsPerPixel() + 7) / 8;
+        }
+    }
+
+    private PngDecoder() {
+    }
+
+    /**
+     * Decodes PNG bytes
+     */
+    public static TextureRaster decode(byte[] data) throws IOException {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decodes PNG data from a buffer (heap or direct, for example a mapped jar entry)
+     * The buffer's position is advanced past the data that was read
+     */
+    public static TextureRaster decode(ByteBuffer data) throws IOException {
+        ByteBuffer in = data.slice().order(ByteOrder.BIG_ENDIAN);
+        Header header = readHeader(in);
+
+        byte[] raw = new byte[(int) rawSize(header)];
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        int inflated = 0;
+
+        try {
+            while (true) {
+                if (in.remaining() < 8) {
+                    throw new IOException("Truncated PNG: missing IEND");
+                }
+                int length = in.getInt();
+                int type = in.getInt();
+                if (length < 0 || length > in.remaining() - 4) {
+                    throw new IOException("Truncated PNG chunk");
+                }
+                ByteBuffer body = in.slice(in.position(), length);
+                in.position(in.position() + length + 4); // skip body and CRC, not checked
+
+                if (type == TYPE_PLTE) {
+                    readPalette(header, body);
+                } else if (type == TYPE_TRNS) {
+                    readTransparency(header, body);
+                } else if (type == TYPE_IDAT) {
+                    inflater.setInput(body);
+                    while (!inflater.needsInput() && !inflater.finished() && inflated < raw.length) {
+                        int n = inflater.inflate(raw, inflated, raw.length - inflated);
+                        if (n == 0 && inflater.needsDictionary()) {
+                            throw new IOException("PNG data requires a preset dictionary");
+                        }
+                        inflated += n;
+                    }
+                } else if (type == TYPE_IEND) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt PNG image data", e);
+        }
+
+        data.position(data.position() + in.position());
+        if (inflated < raw.length) {
+            throw new IOException("Truncated PNG image data");
+        }
+        if (header.colorType == 3 && header.palette.length == 0) {
+            throw new IOException("Indexed PNG without palette");
+        }
+
+        TextureRaster raster = TextureRaster.create(header.width, header.height);
+        if (header.interlaced) {
+            decodeInterlaced(header, raw, raster);
+        } else {
+            decodePass(header, raw, 0, raster, 0, 0, 1, 1, header.width, header.height);
+        }
+        return raster;
+    }
+
+    /**
+     * Opens a PNG for row-by-row decoding, so only a couple of rows are held at a time
+     * Interlaced images cannot be streamed and are decoded whole behind the same interface
+     */
+    public static RowReader rows(ByteBuffer data) throws IOException {
+        return new RowReader(data);
+    }
+
+    /**
+     * Streaming decoder producing packed ARGB rows from top to bottom
+     */
+    public static final class RowReader implements AutoCloseable {
+        public final Header header;
+
+        private final ByteBuffer in;
+        private final Inflater inflater; // null for interlaced images, decoded whole
+        private final TextureRaster interlaced;
+        private final byte[] rows;
+        private final int stride;
+        private int nextRow;
+
+        private RowReader(ByteBuffer data) throws IOException {
+            this.in = data.slice().order(ByteOrder.BIG_ENDIAN);
+            this.header = readHeader(in);
+            this.stride = header.rowBytes(header.width);
+
+            if (header.interlaced) {
+                this.interlaced = decode(data.duplicate());
+                this.inflater = null;
+                this.rows = null;
+                return;
+            }
+            this.interlaced = null;
+            // Current and previous row, alternating halves, each with its filter byte
+            this.rows = new byte[2 * (stride + 1)];
+
+            // Ended here on failure: the caller never gets a reader to close
+            this.inflater = new Inflater();
+            try {
+                if (!nextImageChunk()) {
+                    throw new IOException("PNG has no image data");
+                }
+                if (header.colorType == 3 && header.palette.length == 0) {
+                    throw new IOException("Indexed PNG without palette");
+                }
+            } catch (IOException | RuntimeException e) {
+                inflater.end();
+                throw e;
+            }
+        }
+
+        /**
+         * Gets the number of rows not read yet
+         */
+        public int remainingRows() {
+            return header.height - nextRow;
+        }
+
+        /**
+         * Decodes the next count rows into dst starting at offset (count * width values)
+         */
+        public void readRows(int[] dst, int offset, int count) throws IOException {
+            if (count > remainingRows()) {
+                throw new IllegalArgumentException("Only " + remainingRows() + " rows left");
+            }
+            int width = header.width;
+
+            if (interlaced != null) {
+                System.arraycopy(interlaced.pixels, nextRow * width, dst, offset, count * width);
+                nextRow += count;
+                return;
+            }
+
+            int bpp = header.filterStride();
+            for (int row = 0; row < count; row++, nextRow++) {
+                int rowStart = (nextRow & 1) * (stride + 1);
+                int previousStart = nextRow == 0 ? -1 : ((nextRow - 1) & 1) * (stride + 1) + 1;
+                inflateFully(rowStart, stride + 1);
+                unfilter(rows[rowStart], rows, rowStart + 1, previousStart, stride, bpp);
+
+                int out = offset + row * width;
+                for (int x = 0; x < width; x++) {
+                    dst[out + x] = readPixel(header, rows, rowStart + 1, x);
+                }
+            }
+        }
+
+        private void inflateFully(int offset, int length) throws IOException {
+            int filled = 0;
+            try {
+                while (filled < length) {
+                    if (inflater.needsInput()) {
+                        if (!nextImageChunk()) {
+                            throw new IOException("Truncated PNG image data");
+                        }
+                        continue;
+                    }
+                    int n = inflater.inflate(rows, offset + filled, length - filled);
+                    if (n == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                        throw new IOException("Truncated PNG image data");
+                    }
+                    filled += n;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt PNG image data", e);
+            }
+        }
+
+        /**
+         * Advances to the next non-empty IDAT chunk and feeds it to the inflater
+         * Palette and transparency chunks met on the way are applied to the header
+         */
+        private boolean nextImageChunk() throws IOException {
+            while (in.remaining() >= 8) {
+                int length = in.getInt();
+                int type = in.getInt();
+                if (length < 0 || length > in.remaining() - 4) {
+                    throw new IOException("Truncated PNG chunk");
+                }
+                ByteBuffer body = in.slice(in.position(), length);
+                in.position(in.position() + length + 4);
+
+                if (type == TYPE_IDAT && length > 0) {
+                    inflater.setInput(body);
+                    return true;
+                } else if (type == TYPE_PLTE) {
+                    readPalette(header, body);
+                } else if (type == TYPE_TRNS) {
+                    readTransparency(header, body);
+                } else if (type == TYPE_IEND) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void close() {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Reads only the header of a PNG, without inflating any image data
+     */
+    public static Header readHeader(ByteBuffer in) throws IOException {
+        if (in.remaining() < 33 || in.getLong() != SIGNATURE) {
+            throw new IOException("Not a PNG file");
+        }
+        int length = in.getInt();
+        if (in.getInt() != TYPE_IHDR || length != 13) {
+            throw new IOException("PNG does not start with IHDR");
+        }
+
+        int width = in.getInt();
+        int height = in.getInt();
+        int bitDepth = in.get() & 0xFF;
+        int colorType = in.get() & 0xFF;
+        int compression = in.get() & 0xFF;
+        int filter = in.get() & 0xFF;
+        int interlace = in.get() & 0xFF;
+        in.getInt(); // CRC, not checked (see the class comment)
+
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE / 4) {
+            throw new IOException("Invalid PNG size: " + width + "x" + height);
+        }
+        if (compression != 0 || filter != 0 || interlace > 1 || !validDepth(colorType, bitDepth)) {
+            throw new IOException("Unsupported PNG format: type=" + colorType + " depth=" + bitDepth);
+        }
+        Header header = new Header(width, height, bitDepth, colorType, interlace == 1);
+        if (rawSize(header) > MAX_IMAGE_DATA) {
+            throw new IOException("PNG too large: " + width + "x" + height + " at " + header.bitsPerPixel() + " bits per pixel");
+        }
+        return header;
+    }
+
+    private static boolean validDepth(int colorType, int bitDepth) {
+        return switch (colorType) {
+            case 0 -> bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16;
+            case 3 -> bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+            case 2, 4, 6 -> bitDepth == 8 || bitDepth == 16;
+            default -> false;
+        };
+    }
+
+    /**
+     * Gets the size of the inflated image data: every row of every pass with its filter byte
+     */
+    private static long rawSize(Header header) {
+        if (!header.interlaced) {
+            return (header.rowBytesLong(header.width) + 1) * header.height;
+        }
+        long size = 0;
+        for (int pass = 0; pass < 7; pass++) {
+            int passWidth = passSize(header.width, PASS_X[pass], PASS_DX[pass]);
+            int passHeight = passSize(header.height, PASS_Y[pass], PASS_DY[pass]);
+            if (passWidth > 0 && passHeight > 0) {
+                size += (header.rowBytesLong(passWidth) + 1) * passHeight;
+            }
+        }
+        return size;
+    }
+
+    private static int passSize(int size, int origin, int step) {
+        return size <= origin ? 0 : (size - origin + step - 1) / step;
+    }
+
+    private static void readPalette(Header header, ByteBuffer body) {
+        int entries = Math.min(256, body.remaining() / 3);
+        int[] palette = new int[entries];
+        for (int i = 0; i < entries; i++) {
+            int r = body.get() & 0xFF;
+            int g = body.get() & 0xFF;
+            int b = body.get() & 0xFF;
+            palette[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+        header.palette = palette;
+    }
+
+    private static void readTransparency(Header header, ByteBuffer body) {
+        if (header.colorType == 3) {
+            int[] palette = header.palette;
+            for (int i = 0; i < palette.length && body.hasRemaining(); i++) {
+                palette[i] = ((body.get() & 0xFF) << 24) | (palette[i] & 0x00FFFFFF);
+            }
+        } else if (header.colorType == 0 && body.remaining() >= 2) {
+            header.transparentGray = body.getShort() & 0xFFFF;
+        } else if (header.colorType == 2 && body.remaining() >= 6) {
+            int r = body.getShort() & 0xFFFF;
+            int g = body.getShort() & 0xFFFF;
+            int b = body.getShort() & 0xFFFF;
+            if (header.bitDepth == 16) {
+                header.transparentKey16 = new int[]{r, g, b};
+            } else {
+                header.transparentRGB = (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    private static void decodeInterlaced(Header header, byte[] raw, TextureRaster raster) throws IOException {
+        int offset = 0;
+        for (int pass = 0; pass < 7; pass++) {
+            int passWidth = passSize(header.width, PASS_X[pass], PASS_DX[pass]);
+            int passHeight = passSize(header.height, PASS_Y[pass], PASS_DY[pass]);
+            if (passWidth == 0 || passHeight == 0) {
+                continue;
+            }
+            decodePass(header, raw, offset, raster, PASS_X[pass], PASS_Y[pass], PASS_DX[pass], PASS_DY[pass],
+                    passWidth, passHeight);
+            offset += (header.rowBytes(passWidth) + 1) * passHeight;
+        }
+    }
+
+    /**
+     * Unfilters the rows of one pass in place and writes their pixels into the raster
+     */
+    private static void decodePass(Header header, byte[] raw, int offset, TextureRaster raster,
+                                   int originX, int originY, int stepX, int stepY,
+                                   int passWidth, int passHeight) throws IOException {
+        int stride = header.rowBytes(passWidth);
+        int bpp = header.filterStride();
+        int previousRow = -1;
+
+        for (int row = 0; row < passHeight; row++) {
+            int rowStart = offset + row * (stride + 1);
+            unfilter(raw[rowStart], raw, rowStart + 1, previousRow, stride, bpp);
+            previousRow = rowStart + 1;
+
+            int y = originY + row * stepY;
+            int outOffset = y * raster.width;
+            for (int column = 0; column < passWidth; column++) {
+                raster.pixels[outOffset + originX + column * stepX] = readPixel(header, raw, rowStart + 1, column);
+            }
+        }
+    }
+
+    static void unfilter(int filter, byte[] data, int start, int previous, int stride, int bpp) throws IOException {
+        switch (filter) {
+            case 0 -> {
+            }
+            case 1 -> {
+                for (int i = bpp; i < stride; i++) {
+                    data[start + i] += data[start + i - bpp];
+                }
+            }
+            case 2 -> {
+                if (previous >= 0) {
+                    for (int i = 0; i < stride; i++) {
+                        data[start + i] += data[previous + i];
+                    }
+                }
+            }
+            case 3 -> {
+                for (int i = 0; i < stride; i++) {
+                    int left = i >= bpp ? data[start + i - bpp] & 0xFF : 0;
+                    int up = previous >= 0 ? data[previous + i] & 0xFF : 0;
+                    data[start + i] += (byte) ((left + up) >>> 1);
+                }
+            }
+            case 4 -> {
+                for (int i = 0; i < stride; i++) {
+                    int left = i >= bpp ? data[start + i - bpp] & 0xFF : 0;
+                    int up = previous >= 0 ? data[previous + i] & 0xFF : 0;
+                    int upLeft = i >= bpp && previous >= 0 ? data[previous + i - bpp] & 0xFF : 0;
+                    data[start + i] += (byte) paeth(left, up, upLeft);
+                }
+            }
+            default -> throw new IOException("Invalid PNG filter type: " + filter);
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * Converts one pixel of an unfiltered row to packed ARGB
+     */
+    static int readPixel(Header header, byte[] row, int rowStart, int x) {
+        int depth = header.bitDepth;
+        switch (header.colorType) {
+            case 0 -> {
+                int sample = readSample(row, rowStart, x, depth);
+                int gray = scaleTo8(sample, depth);
+                int alpha = sample == header.transparentGray ? 0 : 0xFF;
+                return (alpha << 24) | (gray << 16) | (gray << 8) | gray;
+            }
+            case 3 -> {
+                int index = readSample(row, rowStart, x, depth);
+                return index < header.palette.length ? header.palette[index] : 0xFF000000;
+            }
+            case 2 -> {
+                if (depth == 8) {
+                    int p = rowStart + x * 3;
+                    int rgb = ((row[p] & 0xFF) << 16) | ((row[p + 1] & 0xFF) << 8) | (row[p + 2] & 0xFF);
+                    return (rgb == header.transparentRGB ? 0 : 0xFF000000) | rgb;
+                }
+                int p = rowStart + x * 6;
+                int r = readShort(row, p), g = readShort(row, p + 2), b = readShort(row, p + 4);
+                int[] key = header.transparentKey16;
+                int alpha = key != null && r == key[0] && g == key[1] && b == key[2] ? 0 : 0xFF;
+                return (alpha << 24) | ((r >>> 8) << 16) | ((g >>> 8) << 8) | (b >>> 8);
+            }
+            case 4 -> {
+                if (depth == 8) {
+                    int p = rowStart + x * 2;
+                    int gray = row[p] & 0xFF;
+                    return ((row[p + 1] & 0xFF) << 24) | (gray << 16) | (gray << 8) | gray;
+                }
+                int p = rowStart + x * 4;
+                int gray = row[p] & 0xFF;
+                return ((row[p + 2] & 0xFF) << 24) | (gray << 16) | (gray << 8) | gray;
+            }
+            default -> {
+                if (depth == 8) {
+                    int p = rowStart + x * 4;
+                    return ((row[p + 3] & 0xFF) << 24) | ((row[p] & 0xFF) << 16)
+                            | ((row[p + 1] & 0xFF) << 8) | (row[p + 2] & 0xFF);
+                }
+                int p = rowStart + x * 8;
+                return ((row[p + 6] & 0xFF) << 24) | ((row[p] & 0xFF) << 16)
+                        | ((row[p + 2] & 0xFF) << 8) | (row[p + 4] & 0xFF);
+            }
+        }
+    }
+
+    private static int readSample(byte[] row, int rowStart, int x, int depth) {
+        return switch (depth) {
+            case 8 -> row[rowStart + x] & 0xFF;
+            case 16 -> readShort(row, rowStart + x * 2);
+            default -> {
+                int bit = x * depth;
+                int shift = 8 - depth - (bit & 7);
+                yield ((row[rowStart + (bit >> 3)] & 0xFF) >> shift) & ((1 << depth) - 1);
+            }
+        };
+    }
+
+    private static int scaleTo8(int sample, int depth) {
+        return switch (depth) {
+            case 1 -> sample * 255;
+            case 2 -> sample * 85;
+            case 4 -> sample * 17;
+            case 16 -> sample >>> 8;
+            default -> sample;
+        };
+    }
+
+    private static int readShort(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static int chunkType(String type) {
+        return (type.charAt(0) << 24) | (type.charAt(1) << 16) | (type.charAt(2) << 8) | type.charAt(3);
+    }
+}
@@ -0,0 +1,454 @@
+package net.variantgenerator.mod.texture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Purpose-built PNG encoder for generated textures
+ *
+ * Recolored item textures almost always have fewer than 256 colors, so the
+ * encoder first tries to build a palette and writes an indexed image
+ * (PLTE + tRNS, packed to 1/2/4/8 bits per pixel). Otherwise it writes RGB or
+ * RGBA truecolor with a cheap per-row filter choice. Deflater and CRC instances
+ * are reused per thread. Encoding is lossless: decoding the output yields the
+ * exact input ARGB values. Rows can also be streamed in through a RowWriter, so
+ * tall images such as animation strips never have to exist as a whole raster.
+ */
+public final class PngEncoder {
+    /**
+     * Version of the encoded output, part of the generation cache key
+     * Bump it whenever a change alters the bytes written for the same pixels
+     */
+    public static final int VERSION = 1;
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int MAX_PALETTE = 256;
+    private static final int PALETTE_SLOTS = 1024;
+    private static final int SMALL_IMAGE_BYTES = 64 * 1024;
+
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_INDEXED = 3;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_COMPRESSION));
+    private static final ThreadLocal<CRC32> CRC = ThreadLocal.withInitial(CRC32::new);
+
+    private PngEncoder() {
+    }
+
+    /**
+     * Encodes a raster as PNG bytes
+     */
+    public static byte[] encode(TextureRaster raster) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 + raster.pixelCount());
+        try {
+            write(raster, out);
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a raster as PNG into a stream
+     */
+    public static void write(TextureRaster raster, OutputStream out) throws IOException {
+        PaletteCollector colors = new PaletteCollector();
+        colors.add(raster.pixels, 0, raster.pixelCount());
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        RowWriter writer = new RowWriter(out, raster.width, raster.height, colors.palette(), colors.opaque(), deflater, false);
+        writer.writeRows(raster.pixels, 0, raster.height);
+        writer.finish();
+    }
+
+    /**
+     * Starts a PNG that is written a few rows at a time, for images too large to hold whole
+     * If colors is non-null and has at most 256 distinct values the image is indexed,
+     * otherwise it is truecolor, RGB when opaque and RGBA when not
+     */
+    public static RowWriter rows(OutputStream out, int width, int height, int[] colors, boolean opaque) throws IOException {
+        int[] palette = null;
+        if (colors != null) {
+            PaletteCollector collector = new PaletteCollector();
+            collector.add(colors, 0, colors.length);
+            palette = collector.palette();
+        }
+        return new RowWriter(out, width, height, palette, opaque, new Deflater(), true);
+    }
+
+    /**
+     * Collects the distinct colors of pixel data, giving up on the palette past 256 colors
+     * Opacity is tracked either way, so the result also picks between RGB and RGBA
+     */
+    public static final class PaletteCollector {
+        private final int[] keys = new int[PALETTE_SLOTS];
+        private final boolean[] used = new boolean[PALETTE_SLOTS];
+        private final int[] colors = new int[MAX_PALETTE];
+        private int colorCount;
+        private boolean overflow;
+        private boolean opaque = true;
+        private int last;
+        private boolean hasLast;
+
+        /**
+         * Adds the pixels of [from, to)
+         */
+        public void add(int[] pixels, int from, int to) {
+            for (int i = from; i < to; i++) {
+                int argb = pixels[i];
+                if (hasLast && argb == last) {
+                    continue;
+                }
+                last = argb;
+                hasLast = true;
+                opaque &= (argb >>> 24) == 0xFF;
+                if (overflow) {
+                    continue;
+                }
+
+                int slot = mix(argb) & (PALETTE_SLOTS - 1);
+                while (used[slot] && keys[slot] != argb) {
+                    slot = (slot + 1) & (PALETTE_SLOTS - 1);
+                }
+                if (!used[slot]) {
+                    if (colorCount == MAX_PALETTE) {
+                        overflow = true;
+                        continue;
+                    }
+                    used[slot] = true;
+                    keys[slot] = argb;
+                    colors[colorCount++] = argb;
+                }
+            }
+        }
+
+        /**
+         * Checks whether every pixel added so far has full alpha
+         */
+        public boolean opaque() {
+            return opaque;
+        }
+
+        /**
+         * Gets the distinct colors, or null if there are more than 256
+         * Colors with alpha below 255 are ordered first so the tRNS chunk stays short
+         */
+        public int[] palette() {
+            if (overflow) {
+                return null;
+            }
+            int[] palette = Arrays.copyOf(colors, colorCount);
+            int translucent = 0;
+            for (int i = 0; i < palette.length; i++) {
+                if ((palette[i] >>> 24) != 0xFF) {
+                    int swap = palette[translucent];
+                    palette[translucent++] = palette[i];
+                    palette[i] = swap;
+                }
+            }
+            return palette;
+        }
+    }
+
+    /**
+     * Streaming PNG writer: rows are filtered and deflated as they arrive and
+     * image data leaves in IDAT chunks of bounded size
+     */
+    public static final class RowWriter {
+        private static final int CHUNK_BYTES = 32 * 1024;
+
+        private final OutputStream out;
+        private final int width;
+        private final int height;
+        private final Deflater deflater;
+        private final boolean ownsDeflater;
+        private final byte[] chunk = new byte[CHUNK_BYTES];
+        private int chunkLength;
+        private int rowsWritten;
+
+        // Indexed mode: palette lookup and packing
+        private final int[] indexKeys;
+        private final int[] indexValues;
+        private final boolean[] indexUsed;
+        private final int bitDepth;
+        private int lastColor;
+        private int lastIndex = -1;
+
+        // Truecolor mode: bytes per pixel and filter scratch rows
+        private final int bpp;
+        private byte[] previous;
+        private byte[] current;
+        private final byte[][] candidates;
+
+        private final int stride;
+        private final byte[] row;
+
+        private RowWriter(OutputStream out, int width, int height, int[] palette, boolean opaque,
+                          Deflater deflater, boolean ownsDeflater) throws IOException {
+            this.out = out;
+            this.width = width;
+            this.height = height;
+            this.deflater = deflater;
+            this.ownsDeflater = ownsDeflater;
+
+            out.write(SIGNATURE);
+            if (palette != null) {
+                this.bitDepth = palette.length <= 2 ? 1 : palette.length <= 4 ? 2 : palette.length <= 16 ? 4 : 8;
+                this.bpp = 0;
+                this.stride = (width * bitDepth + 7) / 8;
+                this.candidates = null;
+                writeHeader(out, width, height, bitDepth, COLOR_TYPE_INDEXED);
+                writePalette(out, palette);
+
+                // Map colors back to indices through a small open-addressing table
+                this.indexKeys = new int[PALETTE_SLOTS];
+                this.indexValues = new int[PALETTE_SLOTS];
+                this.indexUsed = new boolean[PALETTE_SLOTS];
+                for (int i = 0; i < palette.length; i++) {
+                    int slot = mix(palette[i]) & (PALETTE_SLOTS - 1);
+                    while (indexUsed[slot]) {
+                        slot = (slot + 1) & (PALETTE_SLOTS - 1);
+                    }
+                    indexUsed[slot] = true;
+                    indexKeys[slot] = palette[i];
+                    indexValues[slot] = i;
+                }
+            } else {
+                this.bitDepth = 8;
+                this.bpp = opaque ? 3 : 4;
+                this.stride = width * bpp;
+                this.previous = new byte[stride];
+                this.current = new byte[stride];
+                this.candidates = new byte[5][stride];
+                this.indexKeys = null;
+                this.indexValues = null;
+                this.indexUsed = null;
+                writeHeader(out, width, height, 8, opaque ? COLOR_TYPE_RGB : COLOR_TYPE_RGBA);
+            }
+            this.row = new byte[stride + 1];
+
+            long rawSize = (long) (stride + 1) * height;
+            deflater.setLevel(rawSize <= SMALL_IMAGE_BYTES ? Deflater.BEST_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        }
+
+        /**
+         * Writes the next count rows, read from pixels starting at offset
+         */
+        public void writeRows(int[] pixels, int offset, int count) throws IOException {
+            if (count > height - rowsWritten) {
+                throw new IllegalArgumentException("Only " + (height - rowsWritten) + " rows left");
+            }
+            for (int y = 0; y < count; y++) {
+                int rowOffset = offset + y * width;
+                if (indexKeys != null) {
+                    packIndexedRow(pixels, rowOffset);
+                } else {
+                    filterTruecolorRow(pixels, rowOffset);
+                }
+                deflate(row);
+                rowsWritten++;
+            }
+        }
+
+        /**
+         * Flushes the remaining image data and writes the end of the PNG
+         * The stream itself is left open
+         */
+        public void finish() throws IOException {
+            if (rowsWritten != height) {
+                throw new IllegalStateException("Wrote " + rowsWritten + " of " + height + " rows");
+            }
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drain();
+                }
+                if (chunkLength > 0) {
+                    writeChunk(out, "IDAT", chunk, chunkLength);
+                }
+                writeChunk(out, "IEND", new byte[0], 0);
+            } finally {
+                if (ownsDeflater) {
+                    deflater.end();
+                }
+            }
+        }
+
+        private void packIndexedRow(int[] pixels, int rowOffset) {
+            // Palette images compress best unfiltered, so every row uses filter type 0
+            Arrays.fill(row, (byte) 0);
+            int pixelsPerByte = 8 / bitDepth;
+            for (int x = 0; x < width; x++) {
+                int argb = pixels[rowOffset + x];
+                int index;
+                if (argb == lastColor && lastIndex >= 0) {
+                    index = lastIndex;
+                } else {
+                    int slot = mix(argb) & (PALETTE_SLOTS - 1);
+                    while (indexKeys[slot] != argb || !indexUsed[slot]) {
+                        slot = (slot + 1) & (PALETTE_SLOTS - 1);
+                    }
+                    index = indexValues[slot];
+                    lastColor = argb;
+                    lastIndex = index;
+                }
+
+                int bytePos = 1 + x / pixelsPerByte;
+                int shift = 8 - bitDepth * (x % pixelsPerByte + 1);
+                row[bytePos] |= (byte) (index << shift);
+            }
+        }
+
+        private void filterTruecolorRow(int[] pixels, int rowOffset) {
+            for (int x = 0; x < width; x++) {
+                int argb = pixels[rowOffset + x];
+                int p = x * bpp;
+                current[p] = (byte) (argb >> 16);
+                current[p + 1] = (byte) (argb >> 8);
+                current[p + 2] = (byte) argb;
+                if (bpp == 4) {
+                    current[p + 3] = (byte) (argb >>> 24);
+                }
+            }
+
+            int filter = chooseFilter(current, previous, bpp, candidates);
+            row[0] = (byte) filter;
+            System.arraycopy(candidates[filter], 0, row, 1, stride);
+
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        private void deflate(byte[] data) throws IOException {
+            deflater.setInput(data);
+            while (!deflater.needsInput()) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            chunkLength += deflater.deflate(chunk, chunkLength, chunk.length - chunkLength);
+            if (chunkLength == chunk.length) {
+                writeChunk(out, "IDAT", chunk, chunkLength);
+                chunkLength = 0;
+            }
+        }
+    }
+
+    private static void writePalette(OutputStream out, int[] palette) throws IOException {
+        byte[] plte = new byte[palette.length * 3];
+        int translucent = 0;
+        for (int i = 0; i < palette.length; i++) {
+            plte[i * 3] = (byte) (palette[i] >> 16);
+            plte[i * 3 + 1] = (byte) (palette[i] >> 8);
+            plte[i * 3 + 2] = (byte) palette[i];
+            if ((palette[i] >>> 24) != 0xFF) {
+                translucent = i + 1;
+            }
+        }
+        writeChunk(out, "PLTE", plte, plte.length);
+
+        if (translucent > 0) {
+            byte[] trns = new byte[translucent];
+            for (int i = 0; i < translucent; i++) {
+                trns[i] = (byte) (palette[i] >>> 24);
+            }
+            writeChunk(out, "tRNS", trns, trns.length);
+        }
+    }
+
+    /**
+     * Applies all five filters to a row and picks the one with the smallest
+     * sum of absolute (signed) residuals, the standard cheap heuristic
+     */
+    private static int chooseFilter(byte[] row, byte[] prior, int bpp, byte[][] candidates) {
+        int best = 0;
+        long bestScore = Long.MAX_VALUE;
+
+        for (int filter = 0; filter < 5; filter++) {
+            byte[] target = candidates[filter];
+            long score = 0;
+            for (int i = 0; i < row.length; i++) {
+                int x = row[i] & 0xFF;
+                int a = i >= bpp ? row[i - bpp] & 0xFF : 0;
+                int b = prior[i] & 0xFF;
+                int c = i >= bpp ? prior[i - bpp] & 0xFF : 0;
+                int predicted = switch (filter) {
+                    case 0 -> 0;
+                    case 1 -> a;
+                    case 2 -> b;
+                    case 3 -> (a + b) >>> 1;
+                    default -> paeth(a, b, c);
+                };
+                byte residual = (byte) (x - predicted);
+                target[i] = residual;
+                score += Math.abs(residual);
+            }
+            if (score < bestScore) {
+                bestScore = score;
+                best = filter;
+            }
+        }
+        return best;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static void writeHeader(OutputStream out, int width, int height, int bitDepth, int colorType) throws IOException {
+        byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, width);
+        putInt(ihdr, 4, height);
+        ihdr[8] = (byte) bitDepth;
+        ihdr[9] = (byte) colorType;
+        ihdr[10] = 0; // deflate
+        ihdr[11] = 0; // adaptive filtering
+        ihdr[12] = 0; // no interlace
+        writeChunk(out, "IHDR", ihdr, ihdr.length);
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = {(byte) type.charAt(0), (byte) type.charAt(1), (byte) type.charAt(2), (byte) type.charAt(3)};
+        byte[] header = new byte[8];
+        putInt(header, 0, length);
+        System.arraycopy(typeBytes, 0, header, 4, 4);
+        out.write(header);
+        out.write(data, 0, length);
+
+        CRC32 crc = CRC.get();
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) crc.getValue());
+        out.write(trailer);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static int mix(int value) {
+        int h = value * 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+}
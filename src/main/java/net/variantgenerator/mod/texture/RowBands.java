@@ -0,0 +1,91 @@
+package net.variantgenerator.mod.texture;
+
+import net.variantgenerator.mod.util.WorkerPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Splits large images into bands of whole rows processed on the shared worker pool
+ *
+ * Kernels work on pixel index ranges, so a band is just the range covering a run
+ * of rows. Images below the threshold (every vanilla-size sprite) run inline on
+ * the calling thread with no fork at all. When called from a worker that is
+ * already generating another texture, the bands are forked onto that worker's
+ * queue and idle workers steal them.
+ */
+public final class RowBands {
+    /**
+     * Default pixel count from which an image is split (128x128)
+     */
+    public static final int DEFAULT_THRESHOLD = 128 * 128;
+
+    // Target band size: large enough that fork cost is noise, small enough to balance
+    private static final int BAND_PIXELS = 16 * 1024;
+
+    private static volatile int threshold = DEFAULT_THRESHOLD;
+
+    private RowBands() {
+    }
+
+    /**
+     * Work on the pixel range [from, to) of an image
+     */
+    @FunctionalInterface
+    public interface Band {
+        /**
+         * Processes a range and returns a count (such as recolored pixels) summed over all bands
+         */
+        int apply(int from, int to);
+    }
+
+    /**
+     * Sets the pixel count from which images are split (0 = never split)
+     */
+    public static void configure(int thresholdPixels) {
+        if (thresholdPixels < 0) {
+            throw new IllegalArgumentException("Threshold must be >= 0");
+        }
+        threshold = thresholdPixels;
+    }
+
+    /**
+     * Runs work over a width x height image, in parallel row bands when the image is large enough
+     * Returns the sum of the band results
+     */
+    public static int run(int width, int height, Band band) {
+        int pixels = width * height;
+        int limit = threshold;
+        if (limit == 0 || pixels < limit || height < 2) {
+            return band.apply(0, pixels);
+        }
+
+        int rowsPerBand = Math.max(1, BAND_PIXELS / Math.max(1, width));
+        int bandCount = (height + rowsPerBand - 1) / rowsPerBand;
+        if (bandCount < 2) {
+            return band.apply(0, pixels);
+        }
+
+        List<ForkJoinTask<Integer>> tasks = new ArrayList<>(bandCount);
+        for (int row = 0; row < height; row += rowsPerBand) {
+            int from = row * width;
+            int to = Math.min(height, row + rowsPerBand) * width;
+            tasks.add(ForkJoinTask.adapt(() -> band.apply(from, to)));
+        }
+        WorkerPool.get().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+        int total = 0;
+        for (ForkJoinTask<Integer> task : tasks) {
+            total += task.join();
+        }
+        return total;
+    }
+
+    /**
+     * Runs work over a raster, in parallel row bands when the raster is large enough
+     */
+    public static int run(TextureRaster raster, Band band) {
+        return run(raster.width, raster.height, band);
+    }
+}
@@ -0,0 +1,93 @@
+package net.variantgenerator.mod.texture;
+
+/**
+ * Portable scalar implementation of the pixel kernels
+ * Always available, and the reference the vector kernels must match bit for bit
+ */
+final class ScalarPixelKernel implements PixelKernel {
+    static final ScalarPixelKernel INSTANCE = new ScalarPixelKernel();
+
+    private ScalarPixelKernel() {
+    }
+
+    @Override
+    public int recolor(int[] src, int[] dst, int from, int to, int[] table) {
+        int changedPixels = 0;
+        for (int i = from; i < to; i++) {
+            int argb = src[i];
+            int r = (argb >> 16) & 0xFF;
+            int g = (argb >> 8) & 0xFF;
+            int b = argb & 0xFF;
+
+            if (r == g && g == b) {
+                dst[i] = (argb & 0xFF000000) | table[b];
+                changedPixels++;
+            } else {
+                dst[i] = argb;
+            }
+        }
+        return changedPixels;
+    }
+
+    @Override
+    public int recolorAll(int[] src, int[][] dst, int from, int to, int[][] tables) {
+        int tierCount = tables.length;
+        int changedPixels = 0;
+        for (int i = from; i < to; i++) {
+            int argb = src[i];
+            int r = (argb >> 16) & 0xFF;
+            int g = (argb >> 8) & 0xFF;
+            int b = argb & 0xFF;
+
+            if (r == g && g == b) {
+                int alpha = argb & 0xFF000000;
+                for (int t = 0; t < tierCount; t++) {
+                    dst[t][i] = alpha | tables[t][b];
+                }
+                changedPixels++;
+            } else {
+                for (int t = 0; t < tierCount; t++) {
+                    dst[t][i] = argb;
+                }
+            }
+        }
+        return changedPixels;
+    }
+
+    @Override
+    public void recolorOpaque(int[] src, int[] dst, int from, int to, int[] table) {
+        for (int i = from; i < to; i++) {
+            int argb = src[i];
+            int r = (argb >> 16) & 0xFF;
+            int g = (argb >> 8) & 0xFF;
+            int b = argb & 0xFF;
+
+            if ((argb >>> 24) == 0 || r != g || g != b) {
+                dst[i] = argb;
+            } else {
+                dst[i] = (argb & 0xFF000000) | table[b];
+            }
+        }
+    }
+
+    @Override
+    public void mapChannels(int[] src, int[] dst, int from, int to, int[] table) {
+        for (int i = from; i < to; i++) {
+            int argb = src[i];
+            if ((argb >>> 24) == 0) {
+                dst[i] = argb;
+                continue;
+            }
+
+            int r = table[(argb >> 16) & 0xFF];
+            int g = table[(argb >> 8) & 0xFF];
+            int b = table[argb & 0xFF];
+            dst[i] = (argb & 0xFF000000) | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
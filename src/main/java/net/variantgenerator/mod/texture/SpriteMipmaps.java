@@ -0,0 +1,86 @@
+package net.variantgenerator.mod.texture;
+
+import net.variantgenerator.mod.util.ContentHash;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mip chains built alongside generated textures, by sprite identifier
+ *
+ * Generation registers the chain of every texture it writes or restores; when
+ * the client stitches the atlas, a generated sprite takes its levels from here
+ * instead of building them. Levels are held as raw ARGB rasters; only the
+ * generation cache stores them as PNG. A chain records the content hash of the
+ * texture it was built from, so a sprite whose pixels differ (for example
+ * replaced by a resource pack) builds its own.
+ */
+public final class SpriteMipmaps {
+    /**
+     * Deepest level built, the highest mipmap setting the game offers
+     */
+    public static final int MAX_LEVELS = 4;
+
+    private static final Map<String, Chain> CHAINS = new ConcurrentHashMap<>();
+
+    private SpriteMipmaps() {
+    }
+
+    /**
+     * Mip levels 1 and up of a texture
+     */
+    public record Chain(long baseHash, TextureRaster[] levels) {
+
+        /**
+         * Builds the chain of a texture, as deep as its size allows up to MAX_LEVELS
+         * The base is hashed while its first level is filtered, not in a pass of its own
+         */
+        public static Chain build(TextureRaster base) {
+            ContentHash.IntHasher hasher = ContentHash.ints(base.pixelCount());
+            TextureRaster[] levels = TextureScaler.mipChain(base, TextureScaler.mipLevels(base.width, base.height, MAX_LEVELS), hasher);
+            return new Chain(TextureHistogram.contentHash(base.width, base.height, hasher.finish()), levels);
+        }
+
+        /**
+         * Gets the number of levels below the base
+         */
+        public int depth() {
+            return levels.length;
+        }
+
+        /**
+         * Gets a level, 1 being half the base size
+         */
+        public TextureRaster level(int level) {
+            return levels[level - 1];
+        }
+    }
+
+    /**
+     * Registers the chain of a generated sprite, given as namespace:path
+     */
+    public static void register(String spriteId, Chain chain) {
+        CHAINS.put(spriteId, chain);
+    }
+
+    /**
+     * Gets the chain registered for a sprite, or null if it was not generated with one
+     */
+    public static Chain get(String spriteId) {
+        return CHAINS.get(spriteId);
+    }
+
+    /**
+     * Forgets every chain, before a generation run registers its own
+     */
+    public static void clear() {
+        CHAINS.clear();
+    }
+
+    /**
+     * Gets the number of sprites with a chain
+     */
+    public static int size() {
+        return CHAINS.size();
+    }
+}
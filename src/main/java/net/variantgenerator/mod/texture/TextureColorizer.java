@@ -1,5 +1,6 @@
 package net.variantgenerator.mod.texture;
 
+import net.variantgenerator.mod.util.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -7,6 +8,8 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.*;
 
 /**
@@ -43,6 +46,18 @@ public class TextureColorizer {
             return (a << 24) | (r << 16) | (g << 8) | b;
         }
 
+        /**
+         * Unpacks a pixel from a packed ARGB value
+         */
+        public static Pixel fromARGB(int argb) {
+            return new Pixel(
+                    (argb >> 16) & 0xFF,
+                    (argb >> 8) & 0xFF,
+                    argb & 0xFF,
+                    (argb >>> 24)
+            );
+        }
+
         @Override
         public String toString() {
             return String.format("(%d,%d,%d,%d)", r, g, b, a);
@@ -75,42 +90,22 @@ public class TextureColorizer {
      * Analyzes an image and extracts grayscale information
      */
     public GrayscaleAnalysis analyzeGrayscale(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-
-        int maxBrightness = -1;
-        int minBrightness = 256;
-        Pixel brightestPixel = null;
-        Pixel darkestPixel = null;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Pixel pixel = getPixel(image, x, y);
-
-                // Only consider non-transparent pixels
-                if (pixel.a > 0 && pixel.isGrayscale()) {
-                    int brightness = pixel.brightness();
-
-                    if (brightness > maxBrightness) {
-                        maxBrightness = brightness;
-                        brightestPixel = pixel;
-                    }
-                    if (brightness < minBrightness) {
-                        minBrightness = brightness;
-                        darkestPixel = pixel;
-                    }
-                }
-            }
-        }
+        return analyzeGrayscale(ImageRasters.read(image));
+    }
 
-        if (brightestPixel == null) {
-            brightestPixel = new Pixel(255, 255, 255, 255);
-        }
-        if (darkestPixel == null) {
-            darkestPixel = new Pixel(0, 0, 0, 255);
-        }
+    /**
+     * Analyzes a raster and extracts grayscale information
+     * Backed by the memoized histogram, so repeated calls on the same content are free
+     */
+    public GrayscaleAnalysis analyzeGrayscale(TextureRaster raster) {
+        TextureHistogram histogram = TextureHistogram.analyze(raster);
+
+        int maxBrightness = histogram.maxGrayscaleLuminance();
+        int minBrightness = histogram.minGrayscaleLuminance();
+        Pixel brightestPixel = maxBrightness >= 0 ? histogram.firstGrayscalePixelAt(maxBrightness) : new Pixel(255, 255, 255, 255);
+        Pixel darkestPixel = minBrightness <= 255 ? histogram.firstGrayscalePixelAt(minBrightness) : new Pixel(0, 0, 0, 255);
 
-        LOGGER.info("Grayscale Analysis - Brightest: {} ({}), Darkest: {} ({})",
+        LOGGER.debug("Grayscale Analysis - Brightest: {} ({}), Darkest: {} ({})",
                 maxBrightness, brightestPixel, minBrightness, darkestPixel);
 
         return new GrayscaleAnalysis(255, 0, brightestPixel, darkestPixel, maxBrightness, minBrightness);
@@ -120,82 +115,104 @@ public class TextureColorizer {
      * Analyzes an image and extracts color information based on brightness
      */
     public GrayscaleAnalysis analyzeColors(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-
-        int maxBrightness = -1;
-        int minBrightness = 256;
-        Pixel brightestPixel = null;
-        Pixel darkestPixel = null;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Pixel pixel = getPixel(image, x, y);
-
-                // Only consider non-transparent pixels
-                if (pixel.a > 0) {
-                    int brightness = pixel.brightness();
-
-                    if (brightness > maxBrightness) {
-                        maxBrightness = brightness;
-                        brightestPixel = pixel;
-                    }
-                    if (brightness < minBrightness) {
-                        minBrightness = brightness;
-                        darkestPixel = pixel;
-                    }
-                }
-            }
-        }
+        return analyzeColors(ImageRasters.read(image));
+    }
 
-        if (brightestPixel == null) {
-            brightestPixel = new Pixel(255, 255, 255, 255);
-        }
-        if (darkestPixel == null) {
-            darkestPixel = new Pixel(0, 0, 0, 255);
-        }
+    /**
+     * Analyzes a raster and extracts color information based on brightness
+     * Backed by the memoized histogram, so repeated calls on the same content are free
+     */
+    public GrayscaleAnalysis analyzeColors(TextureRaster raster) {
+        TextureHistogram histogram = TextureHistogram.analyze(raster);
+
+        int maxBrightness = histogram.maxLuminance();
+        int minBrightness = histogram.minLuminance();
+        Pixel brightestPixel = maxBrightness >= 0 ? histogram.firstPixelAt(maxBrightness) : new Pixel(255, 255, 255, 255);
+        Pixel darkestPixel = minBrightness <= 255 ? histogram.firstPixelAt(minBrightness) : new Pixel(0, 0, 0, 255);
 
-        LOGGER.info("Color Analysis - Brightest: {} ({}), Darkest: {} ({})",
+        LOGGER.debug("Color Analysis - Brightest: {} ({}), Darkest: {} ({})",
                 maxBrightness, brightestPixel, minBrightness, darkestPixel);
 
         return new GrayscaleAnalysis(255, 0, brightestPixel, darkestPixel, maxBrightness, minBrightness);
     }
 
+    /**
+     * Extracts a palette from a reference texture using robust percentile anchors
+     * The result is memoized by content, so each reference is analyzed once per launch
+     */
+    public GradientLut extractPalette(TextureRaster referenceColorImage) {
+        TextureHistogram histogram = TextureHistogram.analyze(referenceColorImage);
+        Pixel bright = histogram.brightAnchor();
+        Pixel dark = histogram.darkAnchor();
+
+        LOGGER.debug("Reference palette - Bright: {}, Dark: {} ({} of {} pixels opaque)",
+                bright, dark, histogram.opaquePixels(), histogram.totalPixels);
+
+        return GradientLut.of(dark, bright);
+    }
+
+    /**
+     * Extracts a palette of several color stops from a reference texture's luminance quantiles
+     * Keeps the banding of detailed references that a dark-to-bright pair flattens
+     */
+    public GradientLut extractPalette(TextureRaster referenceColorImage, int stops) {
+        List<Pixel> colors = TextureHistogram.analyze(referenceColorImage).paletteStops(stops);
+        LOGGER.debug("Reference palette - {} stops: {}", stops, colors);
+        return GradientLut.of(colors);
+    }
+
     /**
      * Recolors an image by mapping grayscale values to a color range
      */
     public BufferedImage recolorImage(BufferedImage sourceImage, Pixel startColor, Pixel endColor) {
-        BufferedImage result = new BufferedImage(sourceImage.getWidth(), sourceImage.getHeight(),
-                BufferedImage.TYPE_INT_ARGB);
-
-        int width = sourceImage.getWidth();
-        int height = sourceImage.getHeight();
-        int changedPixels = 0;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Pixel pixel = getPixel(sourceImage, x, y);
-
-                if (pixel.isGrayscale()) {
-                    // Map brightness to color range
-                    float t = pixel.r / 255.0f;
-                    int r = (int) (endColor.r + t * (startColor.r - endColor.r));
-                    int g = (int) (endColor.g + t * (startColor.g - endColor.g));
-                    int b = (int) (endColor.b + t * (startColor.b - endColor.b));
-                    int a = pixel.a;
-
-                    result.setRGB(x, y, new Pixel(r, g, b, a).toARGB());
-                    changedPixels++;
-                } else {
-                    result.setRGB(x, y, pixel.toARGB());
-                }
-            }
-        }
+        return ImageRasters.toImage(recolor(ImageRasters.read(sourceImage), startColor, endColor));
+    }
+
+    /**
+     * Recolors a raster by mapping grayscale values to a color range
+     */
+    public TextureRaster recolor(TextureRaster source, Pixel startColor, Pixel endColor) {
+        return recolor(source, GradientLut.of(endColor, startColor));
+    }
+
+    /**
+     * Recolors a raster through a precompiled gradient table
+     * Each grayscale pixel costs one table lookup plus an alpha merge; large
+     * rasters are split into row bands on the worker pool
+     */
+    public TextureRaster recolor(TextureRaster source, GradientLut gradient) {
+        TextureRaster result = source.createCompatible();
+        PixelKernel kernel = PixelKernels.get();
+        int[] table = gradient.table();
+        int changedPixels = RowBands.run(source, (from, to) -> kernel.recolor(source.pixels, result.pixels, from, to, table));
 
         LOGGER.info("Recolored {} pixels", changedPixels);
         return result;
     }
 
+    /**
+     * Recolors a raster into several palettes in a single pass
+     * The grayscale test and alpha split run once per source pixel, and every
+     * palette's output buffer is written in that same pass
+     */
+    public TextureRaster[] recolorAll(TextureRaster source, List<GradientLut> gradients) {
+        int tierCount = gradients.size();
+        TextureRaster[] results = new TextureRaster[tierCount];
+        int[][] dst = new int[tierCount][];
+        int[][] tables = new int[tierCount][];
+        for (int t = 0; t < tierCount; t++) {
+            results[t] = source.createCompatible();
+            dst[t] = results[t].pixels;
+            tables[t] = gradients.get(t).table();
+        }
+
+        PixelKernel kernel = PixelKernels.get();
+        int changedPixels = RowBands.run(source, (from, to) -> kernel.recolorAll(source.pixels, dst, from, to, tables));
+
+        LOGGER.debug("Recolored {} pixels into {} palettes", changedPixels, tierCount);
+        return results;
+    }
+
     /**
      * Loads a PNG image from file
      */
@@ -204,38 +221,43 @@ public class TextureColorizer {
         return ImageIO.read(file);
     }
 
+    /**
+     * Loads a PNG file straight into a raster, without AWT or ImageIO
+     */
+    public TextureRaster loadRaster(File file) throws IOException {
+        LOGGER.debug("Loading raster: {}", file.getAbsolutePath());
+        return PngDecoder.decode(Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Decodes PNG data (for example a resource or jar entry) into a raster
+     */
+    public TextureRaster loadRaster(ByteBuffer data) throws IOException {
+        return PngDecoder.decode(data);
+    }
+
     /**
      * Saves a BufferedImage as PNG
      */
     public void saveImage(BufferedImage image, File file) throws IOException {
-        LOGGER.debug("Saving image: {}", file.getAbsolutePath());
-        ImageIO.write(image, "png", file);
+        saveRaster(ImageRasters.read(image), file);
     }
 
     /**
-     * Gets a pixel from an image
+     * Saves a raster as PNG, using an indexed palette when it has 256 colors or fewer
      */
-    private Pixel getPixel(BufferedImage image, int x, int y) {
-        int argb = image.getRGB(x, y);
-        return new Pixel(
-                (argb >> 16) & 0xFF,
-                (argb >> 8) & 0xFF,
-                argb & 0xFF,
-                (argb >> 24) & 0xFF
-        );
+    public void saveRaster(TextureRaster raster, File file) throws IOException {
+        LOGGER.debug("Saving image: {}", file.getAbsolutePath());
+        FileUtils.writeAtomically(file.toPath(), PngEncoder.encode(raster));
     }
 
     /**
      * Converts grayscale image to colored variant using reference color palette
+     * The reference is analyzed in a single memoized histogram pass, and its
+     * percentile anchors drive the recolor so stray highlight pixels are ignored
      */
     public BufferedImage convertToVariant(BufferedImage grayscaleImage, BufferedImage referenceColorImage) throws IOException {
-        // Analyze grayscale image
-        GrayscaleAnalysis grayscaleAnalysis = analyzeGrayscale(grayscaleImage);
-
-        // Analyze reference color image
-        GrayscaleAnalysis colorAnalysis = analyzeColors(referenceColorImage);
-
-        // Recolor the grayscale image using the reference palette
-        return recolorImage(grayscaleImage, colorAnalysis.brightestPixel, colorAnalysis.darkestPixel);
+        GradientLut palette = extractPalette(ImageRasters.read(referenceColorImage));
+        return ImageRasters.toImage(recolor(ImageRasters.read(grayscaleImage), palette));
     }
 }
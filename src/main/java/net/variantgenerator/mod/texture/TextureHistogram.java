@@ -0,0 +1,362 @@
+package net.variantgenerator.mod.texture;
+
+import net.variantgenerator.mod.texture.TextureColorizer.Pixel;
+import net.variantgenerator.mod.util.ContentHash;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass histogram analysis of a texture
+ *
+ * Builds 256-bin luminance and per-channel histograms for opaque pixels in one
+ * allocation-free pass. Luminance is the (r + g + b) / 3 brightness used by the
+ * colorizer. Results are memoized by pixel content, so reference textures are
+ * analyzed once per launch no matter how many items use them.
+ */
+public final class TextureHistogram {
+    private static final int MAX_CACHED = 256;
+    private static final Map<Long, TextureHistogram> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, TextureHistogram> eldest) {
+                    return size() > MAX_CACHED;
+                }
+            });
+
+    /**
+     * Default fraction of pixels trimmed from each end for the robust anchors
+     */
+    public static final float ANCHOR_PERCENTILE = 0.02f;
+
+    public final long contentHash;
+    public final int totalPixels;
+    private int opaquePixels;
+    private int grayscalePixels;
+
+    // Opaque pixels by luminance, and opaque grayscale pixels by luminance
+    private final int[] luminance = new int[256];
+    private final int[] grayscaleLuminance = new int[256];
+    // Opaque pixels by channel value
+    private final int[] red = new int[256];
+    private final int[] green = new int[256];
+    private final int[] blue = new int[256];
+
+    // Channel sums per luminance bin, used for mean anchor colors
+    private final long[] sumRed = new long[256];
+    private final long[] sumGreen = new long[256];
+    private final long[] sumBlue = new long[256];
+
+    // First pixel seen in scan order per luminance bin
+    private final int[] firstPixel = new int[256];
+    private final int[] firstGrayscalePixel = new int[256];
+
+    private TextureHistogram(long contentHash, int totalPixels) {
+        this.contentHash = contentHash;
+        this.totalPixels = totalPixels;
+    }
+
+    /**
+     * Analyzes a raster, reusing the cached result for identical pixel content
+     */
+    public static TextureHistogram analyze(TextureRaster raster) {
+        long hash = contentHash(raster);
+        TextureHistogram cached = CACHE.get(hash);
+        if (cached != null) {
+            return cached;
+        }
+
+        TextureHistogram histogram = compute(raster, hash);
+        CACHE.put(hash, histogram);
+        return histogram;
+    }
+
+    /**
+     * Computes the content hash used as the memoization key
+     */
+    public static long contentHash(TextureRaster raster) {
+        return contentHash(raster.width, raster.height, ContentHash.hash(raster.pixels, raster.pixelCount()));
+    }
+
+    /**
+     * Combines dimensions and a pixel hash into a content hash
+     * Lets a texture hashed row by row (see ContentHash.ints) match contentHash(raster)
+     */
+    public static long contentHash(int width, int height, long pixelHash) {
+        long dimensions = ((long) width << 32) | height;
+        return ContentHash.combine(dimensions, pixelHash);
+    }
+
+    private static TextureHistogram compute(TextureRaster raster, long hash) {
+        TextureHistogram histogram = new TextureHistogram(hash, raster.pixelCount());
+        int[] pixels = raster.pixels;
+        int count = raster.pixelCount();
+
+        int[] lum = histogram.luminance;
+        int[] grayLum = histogram.grayscaleLuminance;
+        int[] red = histogram.red;
+        int[] green = histogram.green;
+        int[] blue = histogram.blue;
+        long[] sumRed = histogram.sumRed;
+        long[] sumGreen = histogram.sumGreen;
+        long[] sumBlue = histogram.sumBlue;
+        int[] first = histogram.firstPixel;
+        int[] firstGray = histogram.firstGrayscalePixel;
+        int opaque = 0;
+        int grayscale = 0;
+
+        for (int i = 0; i < count; i++) {
+            int argb = pixels[i];
+            if ((argb >>> 24) == 0) {
+                continue;
+            }
+
+            int r = (argb >> 16) & 0xFF;
+            int g = (argb >> 8) & 0xFF;
+            int b = argb & 0xFF;
+            int l = (r + g + b) / 3;
+
+            if (lum[l]++ == 0) {
+                first[l] = argb;
+            }
+            red[r]++;
+            green[g]++;
+            blue[b]++;
+            sumRed[l] += r;
+            sumGreen[l] += g;
+            sumBlue[l] += b;
+            opaque++;
+
+            if (r == g && g == b) {
+                if (grayLum[l]++ == 0) {
+                    firstGray[l] = argb;
+                }
+                grayscale++;
+            }
+        }
+
+        histogram.opaquePixels = opaque;
+        histogram.grayscalePixels = grayscale;
+        return histogram;
+    }
+
+    /**
+     * Gets the number of non-transparent pixels
+     */
+    public int opaquePixels() {
+        return opaquePixels;
+    }
+
+    /**
+     * Gets the number of non-transparent grayscale pixels
+     */
+    public int grayscalePixels() {
+        return grayscalePixels;
+    }
+
+    /**
+     * Gets the fraction of opaque pixels that are grayscale
+     */
+    public float grayscaleRatio() {
+        return opaquePixels == 0 ? 0.0f : (float) grayscalePixels / opaquePixels;
+    }
+
+    /**
+     * Gets the fraction of all pixels that are opaque
+     */
+    public float opaqueRatio() {
+        return totalPixels == 0 ? 0.0f : (float) opaquePixels / totalPixels;
+    }
+
+    /**
+     * Gets the number of opaque pixels with the given luminance
+     */
+    public int luminanceCount(int bin) {
+        return luminance[bin];
+    }
+
+    /**
+     * Gets the number of opaque grayscale pixels with the given luminance
+     */
+    public int grayscaleLuminanceCount(int bin) {
+        return grayscaleLuminance[bin];
+    }
+
+    /**
+     * Gets the number of opaque pixels with the given red value
+     */
+    public int redCount(int value) {
+        return red[value];
+    }
+
+    /**
+     * Gets the number of opaque pixels with the given green value
+     */
+    public int greenCount(int value) {
+        return green[value];
+    }
+
+    /**
+     * Gets the number of opaque pixels with the given blue value
+     */
+    public int blueCount(int value) {
+        return blue[value];
+    }
+
+    /**
+     * Gets the luminance below which the given fraction of opaque pixels fall
+     */
+    public int percentile(float fraction) {
+        return percentile(luminance, opaquePixels, fraction);
+    }
+
+    /**
+     * Gets the highest luminance of any opaque pixel, or -1 if there is none
+     */
+    public int maxLuminance() {
+        return highestBin(luminance);
+    }
+
+    /**
+     * Gets the lowest luminance of any opaque pixel, or 256 if there is none
+     */
+    public int minLuminance() {
+        return lowestBin(luminance);
+    }
+
+    /**
+     * Gets the highest luminance of any opaque grayscale pixel, or -1 if there is none
+     */
+    public int maxGrayscaleLuminance() {
+        return highestBin(grayscaleLuminance);
+    }
+
+    /**
+     * Gets the lowest luminance of any opaque grayscale pixel, or 256 if there is none
+     */
+    public int minGrayscaleLuminance() {
+        return lowestBin(grayscaleLuminance);
+    }
+
+    /**
+     * Gets the first opaque pixel (in scan order) with the given luminance
+     */
+    public Pixel firstPixelAt(int bin) {
+        return luminance[bin] == 0 ? null : Pixel.fromARGB(firstPixel[bin]);
+    }
+
+    /**
+     * Gets the first opaque grayscale pixel (in scan order) with the given luminance
+     */
+    public Pixel firstGrayscalePixelAt(int bin) {
+        return grayscaleLuminance[bin] == 0 ? null : Pixel.fromARGB(firstGrayscalePixel[bin]);
+    }
+
+    /**
+     * Gets the mean color of opaque pixels whose luminance lies in [fromBin, toBin]
+     */
+    public Pixel meanColor(int fromBin, int toBin) {
+        long r = 0, g = 0, b = 0, n = 0;
+        for (int bin = Math.max(0, fromBin); bin <= Math.min(255, toBin); bin++) {
+            r += sumRed[bin];
+            g += sumGreen[bin];
+            b += sumBlue[bin];
+            n += luminance[bin];
+        }
+        if (n == 0) {
+            return null;
+        }
+        return new Pixel((int) ((r + n / 2) / n), (int) ((g + n / 2) / n), (int) ((b + n / 2) / n), 255);
+    }
+
+    /**
+     * Gets the robust bright anchor: the mean color of the brightest pixels,
+     * ignoring outliers above the top percentile
+     */
+    public Pixel brightAnchor() {
+        Pixel anchor = meanColor(percentile(1.0f - ANCHOR_PERCENTILE), 255);
+        return anchor != null ? anchor : new Pixel(255, 255, 255, 255);
+    }
+
+    /**
+     * Gets the robust dark anchor: the mean color of the darkest pixels,
+     * ignoring outliers below the bottom percentile
+     */
+    public Pixel darkAnchor() {
+        Pixel anchor = meanColor(0, percentile(ANCHOR_PERCENTILE));
+        return anchor != null ? anchor : new Pixel(0, 0, 0, 255);
+    }
+
+    /**
+     * Gets palette stops from dark to bright, taken at evenly spaced luminance quantiles
+     * Each stop is the mean color of the pixels in its quantile band; the first and
+     * last stops are the dark and bright anchors, so two stops equal the anchor pair
+     */
+    public List<Pixel> paletteStops(int count) {
+        if (count < 2) {
+            throw new IllegalArgumentException("A palette needs at least 2 stops");
+        }
+
+        List<Pixel> stops = new ArrayList<>(count);
+        stops.add(darkAnchor());
+        float span = 1.0f - 2 * ANCHOR_PERCENTILE;
+        float halfStep = span / (count - 1) / 2;
+        for (int i = 1; i < count - 1; i++) {
+            float center = ANCHOR_PERCENTILE + span * i / (count - 1);
+            Pixel stop = meanColor(percentile(center - halfStep), percentile(center + halfStep));
+            stops.add(stop != null ? stop : stops.get(i - 1));
+        }
+        stops.add(brightAnchor());
+        return stops;
+    }
+
+    /**
+     * Gets the number of memoized analyses
+     */
+    public static int getCacheSize() {
+        return CACHE.size();
+    }
+
+    /**
+     * Clears the memoized analyses
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    private static int percentile(int[] bins, int total, float fraction) {
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * (double) Math.max(0.0f, Math.min(1.0f, fraction))));
+        long cumulative = 0;
+        for (int bin = 0; bin < 256; bin++) {
+            cumulative += bins[bin];
+            if (cumulative >= target) {
+                return bin;
+            }
+        }
+        return 255;
+    }
+
+    private static int highestBin(int[] bins) {
+        for (int bin = 255; bin >= 0; bin--) {
+            if (bins[bin] > 0) {
+                return bin;
+            }
+        }
+        return -1;
+    }
+
+    private static int lowestBin(int[] bins) {
+        for (int bin = 0; bin < 256; bin++) {
+            if (bins[bin] > 0) {
+                return bin;
+            }
+        }
+        return 256;
+    }
+}
@@ -0,0 +1,65 @@
+package net.variantgenerator.mod.texture;
+
+/**
+ * Packed ARGB pixel buffer used by the texture kernels
+ *
+ * Pixels are stored row-major, one int per pixel in 0xAARRGGBB order,
+ * so a whole texture can be processed with a single flat loop
+ */
+public final class TextureRaster {
+    public final int width;
+    public final int height;
+    public final int[] pixels;
+
+    public TextureRaster(int width, int height, int[] pixels) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid raster size: " + width + "x" + height);
+        }
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixel buffer too small for " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Creates an empty (fully transparent) raster
+     */
+    public static TextureRaster create(int width, int height) {
+        return new TextureRaster(width, height, new int[width * height]);
+    }
+
+    /**
+     * Creates an empty raster with the same dimensions as this one
+     */
+    public TextureRaster createCompatible() {
+        return create(width, height);
+    }
+
+    /**
+     * Gets the number of pixels in the raster
+     */
+    public int pixelCount() {
+        return width * height;
+    }
+
+    /**
+     * Gets a packed ARGB pixel
+     */
+    public int getPixel(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    /**
+     * Sets a packed ARGB pixel
+     */
+    public void setPixel(int x, int y, int argb) {
+        pixels[y * width + x] = argb;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TextureRaster{%dx%d}", width, height);
+    }
+}
@@ -0,0 +1,238 @@
+package net.variantgenerator.mod.texture;
+
+import java.util.*;
+
+/**
+ * Lazily described texture processing graph
+ *
+ * A recipe is described first (source, then per-pixel operations, then a tier
+ * palette) and compiled into a plan that can run on any number of textures.
+ * Compiling fuses every run of consecutive operations into a single pass and
+ * computes steps shared by several outputs (such as a common HSL pre-step
+ * before each tier palette) once per texture.
+ *
+ * <pre>
+ * TextureRecipe recipe = new TextureRecipe();
+ * TextureRecipe.Step base = recipe.source().hsl(0, 1.1f, 0).brightness(1.05f, 1.0f);
+ * TextureRecipe.Plan plan = recipe.compile(List.of(base.recolor(netherite), base.recolor(enderite)));
+ * TextureRaster[] tiers = plan.run(source);
+ * </pre>
+ */
+public final class TextureRecipe {
+    private final Step source = new Step(this, null, null);
+
+    /**
+     * Gets the step representing the input texture
+     */
+    public Step source() {
+        return source;
+    }
+
+    /**
+     * A node in the recipe: the result of applying one operation to its parent
+     */
+    public static final class Step {
+        private final TextureRecipe recipe;
+        private final Step parent;
+        private final PixelOp op;
+        private final int depth;
+
+        private Step(TextureRecipe recipe, Step parent, PixelOp op) {
+            this.recipe = recipe;
+            this.parent = parent;
+            this.op = op;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        /**
+         * Gets the recipe the step belongs to
+         */
+        public TextureRecipe recipe() {
+            return recipe;
+        }
+
+        /**
+         * Applies an HSL transformation
+         */
+        public Step hsl(float hueShift, float saturation, float lightness) {
+            return then(HslTransform.of(hueShift, saturation, lightness));
+        }
+
+        /**
+         * Applies brightness adjustment with gamma correction
+         */
+        public Step brightness(float brightnessMultiplier, float gamma) {
+            return then(ChannelCurve.gammaBrightness(gamma, brightnessMultiplier));
+        }
+
+        /**
+         * Maps grayscale pixels through a tier palette
+         */
+        public Step recolor(GradientLut gradient) {
+            return then(new RecolorOp(gradient, false));
+        }
+
+        /**
+         * Maps opaque grayscale pixels through a palette, as generateMissingColors does
+         */
+        public Step generateMissingColors(GradientLut gradient) {
+            return then(new RecolorOp(gradient, true));
+        }
+
+        /**
+         * Applies any per-pixel operation
+         */
+        public Step then(PixelOp nextOp) {
+            return new Step(recipe, this, Objects.requireNonNull(nextOp));
+        }
+    }
+
+    /**
+     * Compiles the recipe for the requested outputs
+     * Only steps the outputs depend on are included in the plan
+     */
+    public Plan compile(List<Step> outputs) {
+        // Count how many consumers (child steps or requested outputs) each step has
+        Map<Step, Integer> consumers = new HashMap<>();
+        Set<Step> visited = new HashSet<>();
+        for (Step output : outputs) {
+            if (output.recipe != this) {
+                throw new IllegalArgumentException("Step belongs to a different recipe");
+            }
+            consumers.merge(output, 1, Integer::sum);
+            for (Step step = output; step.parent != null && visited.add(step); step = step.parent) {
+                consumers.merge(step.parent, 1, Integer::sum);
+            }
+        }
+
+        // Materialize the source, every output and every shared step; fuse everything in between
+        Set<Step> requested = new HashSet<>(outputs);
+        List<Step> materialized = new ArrayList<>();
+        for (Map.Entry<Step, Integer> entry : consumers.entrySet()) {
+            Step step = entry.getKey();
+            if (step != source && (requested.contains(step) || entry.getValue() > 1)) {
+                materialized.add(step);
+            }
+        }
+        materialized.sort(Comparator.comparingInt(step -> step.depth));
+
+        Map<Step, Integer> slots = new HashMap<>();
+        slots.put(source, 0);
+        for (Step step : materialized) {
+            slots.put(step, slots.size());
+        }
+
+        List<Pass> passes = new ArrayList<>(materialized.size());
+        for (Step step : materialized) {
+            Deque<PixelOp> chain = new ArrayDeque<>();
+            Step input = step;
+            do {
+                chain.addFirst(input.op);
+                input = input.parent;
+            } while (!slots.containsKey(input));
+            passes.add(new Pass(slots.get(input), slots.get(step), chain.toArray(new PixelOp[0])));
+        }
+
+        int[] outputSlots = new int[outputs.size()];
+        for (int i = 0; i < outputs.size(); i++) {
+            outputSlots[i] = slots.get(outputs.get(i));
+        }
+        return new Plan(slots.size(), passes, outputSlots);
+    }
+
+    /**
+     * A compiled recipe: an ordered list of fused passes between materialized slots
+     * Plans are immutable and can run concurrently on different textures
+     */
+    public static final class Plan {
+        private final int slotCount;
+        private final List<Pass> passes;
+        private final int[] outputSlots;
+
+        private Plan(int slotCount, List<Pass> passes, int[] outputSlots) {
+            this.slotCount = slotCount;
+            this.passes = passes;
+            this.outputSlots = outputSlots;
+        }
+
+        /**
+         * Runs the plan on a texture, returning one raster per requested output
+         * An output that is the source step itself returns the source raster
+         */
+        public TextureRaster[] run(TextureRaster sourceRaster) {
+            TextureRaster[] slots = new TextureRaster[slotCount];
+            slots[0] = sourceRaster;
+            for (Pass pass : passes) {
+                slots[pass.outputSlot] = pass.run(slots[pass.inputSlot]);
+            }
+
+            TextureRaster[] results = new TextureRaster[outputSlots.length];
+            for (int i = 0; i < outputSlots.length; i++) {
+                results[i] = slots[outputSlots[i]];
+            }
+            return results;
+        }
+
+        /**
+         * Gets the number of full-image passes one run performs
+         */
+        public int passCount() {
+            return passes.size();
+        }
+    }
+
+    /**
+     * One full-image pass applying a fused chain of operations, in row bands for large images
+     */
+    private record Pass(int inputSlot, int outputSlot, PixelOp[] ops) {
+        TextureRaster run(TextureRaster input) {
+            TextureRaster output = input.createCompatible();
+            RowBands.run(input, (from, to) -> {
+                apply(input.pixels, output.pixels, from, to);
+                return 0;
+            });
+            return output;
+        }
+
+        void apply(int[] src, int[] dst, int from, int to) {
+            if (ops.length == 1) {
+                // A lone operation can use its own bulk kernel
+                ops[0].apply(src, dst, from, to);
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                int argb = src[i];
+                for (PixelOp op : ops) {
+                    argb = op.apply(argb);
+                }
+                dst[i] = argb;
+            }
+        }
+    }
+
+    /**
+     * Palette mapping of grayscale pixels, optionally only opaque ones
+     */
+    private record RecolorOp(GradientLut gradient, boolean opaqueOnly) implements PixelOp {
+        @Override
+        public int apply(int argb) {
+            int r = (argb >> 16) & 0xFF;
+            int g = (argb >> 8) & 0xFF;
+            int b = argb & 0xFF;
+            if (r != g || g != b || (opaqueOnly && (argb >>> 24) == 0)) {
+                return argb;
+            }
+            return gradient.map(argb);
+        }
+
+        @Override
+        public void apply(int[] src, int[] dst, int from, int to) {
+            if (opaqueOnly) {
+                PixelKernels.get().recolorOpaque(src, dst, from, to, gradient.table());
+            } else {
+                PixelKernels.get().recolor(src, dst, from, to, gradient.table());
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package net.variantgenerator.mod.texture;
+
+import net.variantgenerator.mod.util.ContentHash;
+
+/**
+ * Size normalization and mip chains for generated textures
+ *
+ * Reductions use an integer box filter with alpha-weighted averaging: each channel is
+ * averaged weighted by alpha, so fully transparent pixels do not bleed black (or
+ * whatever color they happen to hold) into the edges of a sprite. Alpha itself is
+ * a plain average. Upscaling is nearest-neighbor, which keeps pixel art crisp.
+ */
+public final class TextureScaler {
+    /**
+     * Version of the filter output, part of the generation cache key of normalized outputs and mip levels
+     * Bump it whenever a change alters the pixels produced here
+     */
+    public static final int VERSION = 2;
+
+    private TextureScaler() {
+    }
+
+    /**
+     * Gets the number of mip levels below the base for a texture: each level halves
+     * both dimensions exactly, as the game's own mipmap generation requires
+     */
+    public static int mipLevels(int width, int height, int maxLevels) {
+        int levels = Math.min(Integer.numberOfTrailingZeros(width), Integer.numberOfTrailingZeros(height));
+        return Math.max(0, Math.min(levels, maxLevels));
+    }
+
+    /**
+     * Builds mip levels 1..levels of a base texture (level 0, the base itself, is not included)
+     * Level 1 is filtered a row pair at a time and each base row is fed to baseRows as
+     * it is read, so the base is hashed in the same pass; with no level to build the
+     * base rows are fed all the same
+     */
+    public static TextureRaster[] mipChain(TextureRaster base, int levels, ContentHash.IntHasher baseRows) {
+        TextureRaster[] chain = new TextureRaster[levels];
+        if (levels == 0) {
+            baseRows.update(base.pixels, 0, base.pixelCount());
+            return chain;
+        }
+        TextureRaster previous = halve(base, baseRows);
+        chain[0] = previous;
+        for (int level = 1; level < levels; level++) {
+            previous = downsample(previous, 2);
+            chain[level] = previous;
+        }
+        return chain;
+    }
+
+    /**
+     * Gets the height a texture of the given size has once normalized to a width
+     */
+    public static int normalizedHeight(int width, int height, int targetWidth) {
+        return Math.max(1, (int) ((long) height * targetWidth / width));
+    }
+
+    /**
+     * Scales a texture to a target width, keeping its aspect ratio
+     * Integer reductions use the box filter; everything else is nearest-neighbor
+     */
+    public static TextureRaster normalize(TextureRaster source, int targetWidth) {
+        if (source.width == targetWidth) {
+            return source;
+        }
+        if (source.width > targetWidth && source.width % targetWidth == 0) {
+            return downsample(source, source.width / targetWidth);
+        }
+        return nearest(source, targetWidth, normalizedHeight(source.width, source.height, targetWidth));
+    }
+
+    /**
+     * Reduces a texture by an integer factor, averaging factor x factor blocks
+     * Blocks cut off by the right or bottom edge average the pixels they have
+     */
+    public static TextureRaster downsample(TextureRaster source, int factor) {
+        int width = Math.max(1, source.width / factor);
+        int height = Math.max(1, source.height / factor);
+        TextureRaster result = TextureRaster.create(width, height);
+        int[] src = source.pixels;
+        int[] dst = result.pixels;
+
+        RowBands.run(width, height, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int x0 = (i % width) * factor;
+                int y0 = (i / width) * factor;
+                dst[i] = average(src, source.width, x0, y0, Math.min(source.width, x0 + factor), Math.min(source.height, y0 + factor));
+            }
+            return 0;
+        });
+        return result;
+    }
+
+    /**
+     * Halves a texture of even size, feeding its rows to a hash in order as they are read
+     */
+    private static TextureRaster halve(TextureRaster source, ContentHash.IntHasher sourceRows) {
+        int width = source.width / 2;
+        int height = source.height / 2;
+        TextureRaster result = TextureRaster.create(width, height);
+        int[] src = source.pixels;
+        int[] dst = result.pixels;
+
+        for (int y = 0; y < height; y++) {
+            int row = 2 * y * source.width;
+            sourceRows.update(src, row, row + 2 * source.width);
+            for (int x = 0; x < width; x++) {
+                dst[y * width + x] = average(src, source.width, 2 * x, 2 * y, 2 * x + 2, 2 * y + 2);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Averages the block [x0, x1) x [y0, y1) of an image, color weighted by alpha
+     */
+    private static int average(int[] src, int stride, int x0, int y0, int x1, int y1) {
+        long sumA = 0, sumR = 0, sumG = 0, sumB = 0;
+        long plainR = 0, plainG = 0, plainB = 0;
+        int count = 0;
+        for (int y = y0; y < y1; y++) {
+            int row = y * stride;
+            for (int x = x0; x < x1; x++) {
+                int argb = src[row + x];
+                int a = argb >>> 24;
+                int r = (argb >> 16) & 0xFF;
+                int g = (argb >> 8) & 0xFF;
+                int b = argb & 0xFF;
+                sumA += a;
+                sumR += (long) r * a;
+                sumG += (long) g * a;
+                sumB += (long) b * a;
+                plainR += r;
+                plainG += g;
+                plainB += b;
+                count++;
+            }
+        }
+
+        int a = (int) ((sumA + count / 2) / count);
+        int r, g, b;
+        if (sumA == 0) {
+            // Nothing visible to weight by: keep the plain average color
+            r = (int) ((plainR + count / 2) / count);
+            g = (int) ((plainG + count / 2) / count);
+            b = (int) ((plainB + count / 2) / count);
+        } else {
+            r = (int) ((sumR + sumA / 2) / sumA);
+            g = (int) ((sumG + sumA / 2) / sumA);
+            b = (int) ((sumB + sumA / 2) / sumA);
+        }
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static TextureRaster nearest(TextureRaster source, int width, int height) {
+        TextureRaster result = TextureRaster.create(width, height);
+        for (int y = 0; y < height; y++) {
+            int sourceRow = (int) ((long) y * source.height / height) * source.width;
+            for (int x = 0; x < width; x++) {
+                result.pixels[y * width + x] = source.pixels[sourceRow + (int) ((long) x * source.width / width)];
+            }
+        }
+        return result;
+    }
+}
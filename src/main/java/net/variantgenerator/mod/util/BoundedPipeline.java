@@ -0,0 +1,76 @@
+package net.variantgenerator.mod.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Runs jobs through I/O and CPU stages with a cap on the jobs in flight
+ *
+ * Each job is a chain of CompletableFuture stages, each stage on the executor
+ * that suits it: io() for reads and writes, cpu() (the shared worker pool) for
+ * pixel work. While one job waits on the disk another is colorized, and submit
+ * blocks once maxInFlight jobs are running, so a producer can never queue more
+ * decoded textures than that, however many it has to process. Without
+ * parallelism every stage runs inline on the submitting thread, one job at a time.
+ */
+public final class BoundedPipeline {
+    private static final Executor INLINE = Runnable::run;
+
+    private final Executor io;
+    private final Executor cpu;
+    private final Semaphore slots;
+    private final List<CompletableFuture<?>> running = new ArrayList<>();
+
+    public BoundedPipeline(boolean parallel, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one job must be allowed in flight");
+        }
+        this.io = parallel ? WorkerPool.io() : INLINE;
+        this.cpu = parallel ? WorkerPool.get() : INLINE;
+        this.slots = new Semaphore(parallel ? maxInFlight : 1);
+    }
+
+    /**
+     * Gets the executor for stages that read or write files
+     */
+    public Executor io() {
+        return io;
+    }
+
+    /**
+     * Gets the executor for stages that work on pixels
+     */
+    public Executor cpu() {
+        return cpu;
+    }
+
+    /**
+     * Starts a job once a slot is free, blocking until then
+     * The stages are chained onto the completed future passed in; the slot is
+     * released when the last one completes, normally or not
+     */
+    public void submit(Function<CompletableFuture<Void>, CompletableFuture<?>> stages) throws InterruptedException {
+        slots.acquire();
+        CompletableFuture<?> job;
+        try {
+            job = stages.apply(CompletableFuture.completedFuture(null));
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        running.add(job.whenComplete((result, error) -> slots.release()));
+    }
+
+    /**
+     * Waits for every submitted job to complete
+     * Jobs are expected to handle their own failures; any left unhandled is rethrown here
+     */
+    public void await() {
+        CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0])).join();
+        running.clear();
+    }
+}
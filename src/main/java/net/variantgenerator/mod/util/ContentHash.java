@@ -0,0 +1,116 @@
+package net.variantgenerator.mod.util;
+
+/**
+ * Fast 64-bit content hashing for texture data
+ * Used as a cache key for analysis results and generated outputs, not for security
+ */
+public final class ContentHash {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long SEED = 0x27D4EB2F165667C5L;
+
+    private ContentHash() {
+    }
+
+    /**
+     * Hashes the first length values of an int array
+     */
+    public static long hash(int[] data, int length) {
+        return ints(length).update(data, 0, length).finish();
+    }
+
+    /**
+     * Starts an incremental hash of int values whose total count is known up front
+     * Feeding the same values in any number of chunks gives the same result as hash(int[], int)
+     */
+    public static IntHasher ints(long totalLength) {
+        return new IntHasher(SEED ^ (totalLength * PRIME_1));
+    }
+
+    /**
+     * Incremental int hash, for data that is produced a chunk at a time
+     */
+    public static final class IntHasher {
+        private long h;
+
+        private IntHasher(long seed) {
+            this.h = seed;
+        }
+
+        /**
+         * Feeds the values of [from, to)
+         */
+        public IntHasher update(int[] data, int from, int to) {
+            long state = h;
+            for (int i = from; i < to; i++) {
+                state = Long.rotateLeft(state ^ ((data[i] & 0xFFFFFFFFL) * PRIME_2), 31) * PRIME_1;
+            }
+            h = state;
+            return this;
+        }
+
+        /**
+         * Gets the hash of everything fed so far
+         */
+        public long finish() {
+            return ContentHash.finish(h);
+        }
+    }
+
+    /**
+     * Hashes a range of a byte array
+     */
+    public static long hash(byte[] data, int offset, int length) {
+        long h = SEED ^ (length * PRIME_1);
+        int i = offset;
+        int end = offset + length;
+
+        // Consume eight bytes at a time, then the tail
+        for (; i + 8 <= end; i += 8) {
+            long word = (data[i] & 0xFFL)
+                    | (data[i + 1] & 0xFFL) << 8
+                    | (data[i + 2] & 0xFFL) << 16
+                    | (data[i + 3] & 0xFFL) << 24
+                    | (data[i + 4] & 0xFFL) << 32
+                    | (data[i + 5] & 0xFFL) << 40
+                    | (data[i + 6] & 0xFFL) << 48
+                    | (data[i + 7] & 0xFFL) << 56;
+            h = Long.rotateLeft(h ^ (word * PRIME_2), 31) * PRIME_1;
+        }
+        for (; i < end; i++) {
+            h = Long.rotateLeft(h ^ ((data[i] & 0xFFL) * PRIME_2), 31) * PRIME_1;
+        }
+        return finish(h);
+    }
+
+    /**
+     * Hashes a whole byte array
+     */
+    public static long hash(byte[] data) {
+        return hash(data, 0, data.length);
+    }
+
+    /**
+     * Combines two hashes into one, order-sensitive
+     */
+    public static long combine(long first, long second) {
+        return finish(Long.rotateLeft(first * PRIME_1, 27) ^ (second * PRIME_2));
+    }
+
+    /**
+     * Formats a hash as a fixed-width hex string
+     */
+    public static String toHex(long hash) {
+        String hex = Long.toHexString(hash);
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= PRIME_2;
+        h ^= h >>> 29;
+        h *= PRIME_1;
+        h ^= h >>> 32;
+        return h;
+    }
+}
@@ -8,7 +8,8 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
 
 /**
  * Utility class for file operations
@@ -20,54 +21,39 @@ public class FileUtils {
      * Finds all files matching a pattern in a directory
      */
     public static List<File> findFiles(File directory, String filePattern) {
-        List<File> files = new ArrayList<>();
-
-        try {
-            Path startPath = directory.toPath();
-            if (!Files.exists(startPath)) {
-                LOGGER.warn("Directory not found: {}", directory.getAbsolutePath());
-                return files;
-            }
-
-            try (Stream<Path> paths = Files.walk(startPath)) {
-                paths.filter(Files::isRegularFile)
-                        .filter(path -> {
-                            String fileName = path.getFileName().toString();
-                            return fileName.toLowerCase().contains(filePattern.toLowerCase());
-                        })
-                        .map(Path::toFile)
-                        .forEach(files::add);
-            }
-        } catch (IOException e) {
-            LOGGER.error("Error scanning directory: {}", directory.getAbsolutePath(), e);
+        if (!directory.isDirectory()) {
+            LOGGER.warn("Directory not found: {}", directory.getAbsolutePath());
+            return new ArrayList<>();
         }
-
-        return files;
+        String pattern = filePattern.toLowerCase(Locale.ROOT);
+        return collectFiles(directory, name -> name.toLowerCase(Locale.ROOT).contains(pattern));
     }
 
     /**
      * Finds all PNG files in a directory
      */
     public static List<File> findPNGFiles(File directory) {
-        List<File> files = new ArrayList<>();
-
-        try {
-            Path startPath = directory.toPath();
-            if (!Files.exists(startPath)) {
-                LOGGER.debug("Directory not found: {}", directory.getAbsolutePath());
-                return files;
-            }
+        if (!directory.isDirectory()) {
+            LOGGER.debug("Directory not found: {}", directory.getAbsolutePath());
+            return new ArrayList<>();
+        }
+        return collectFiles(directory, name -> name.endsWith(".png"));
+    }
 
-            try (Stream<Path> paths = Files.walk(startPath)) {
-                paths.filter(Files::isRegularFile)
-                        .filter(path -> path.getFileName().toString().endsWith(".png"))
-                        .map(Path::toFile)
-                        .forEach(files::add);
+    /**
+     * Collects the files under a directory whose name passes a filter, in path order
+     * Subdirectories are walked in parallel
+     */
+    private static List<File> collectFiles(File directory, Predicate<String> nameFilter) {
+        Queue<File> found = new ConcurrentLinkedQueue<>();
+        ParallelFileWalker.walk(directory.toPath(), (dir, depth) -> true, (path, attributes, depth) -> {
+            if (nameFilter.test(path.getFileName().toString())) {
+                found.add(path.toFile());
             }
-        } catch (IOException e) {
-            LOGGER.debug("Error scanning PNG files in directory: {}", directory.getAbsolutePath());
-        }
+        });
 
+        List<File> files = new ArrayList<>(found);
+        files.sort(Comparator.naturalOrder());
         return files;
     }
 
@@ -113,6 +99,79 @@ public class FileUtils {
         }
     }
 
+    /**
+     * Writes a file through a temporary sibling and a rename
+     * Readers never see a partial file, and a hard-linked target is replaced rather than written through
+     */
+    public static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, data);
+            moveReplacing(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Makes target a hard link to source, copying instead where links are not supported
+     * The link or copy is made beside the target and renamed over it, so an existing
+     * target stays in place until the new one is complete. A target that already is
+     * the source file is left alone.
+     * Returns true if the target is a link to the source, false if the file was copied
+     */
+    public static boolean linkOrCopy(Path source, Path target) throws IOException {
+        if (Files.exists(target) && Files.isSameFile(source, target)) {
+            return true;
+        }
+        Path parent = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+        try {
+            boolean linked;
+            try {
+                Files.delete(temp); // a link needs a free name
+                Files.createLink(temp, source);
+                linked = true;
+            } catch (UnsupportedOperationException | IOException e) {
+                // Different file stores, FAT volumes, or no permission to link
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+                linked = false;
+            }
+            moveReplacing(temp, target);
+            return linked;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Copies source over target through a temporary sibling and a rename
+     * Unlike linkOrCopy the target never shares its content with the source, so
+     * either can later be edited in place without changing the other
+     */
+    public static void copyAtomically(Path source, Path target) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            moveReplacing(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Moves a file over an existing one, atomically where the file system allows it
+     */
+    public static void moveReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     /**
      * Gets the file extension
      */
@@ -12,13 +12,13 @@ import org.slf4j.LoggerFactory;
  */
 public class ItemUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-ItemUtils");
+    private static final ScanPatternMatcher NOT_VARIANTS = ScanPatternMatcher.compile("iron_ore", "iron_block");
 
     /**
-     * Checks if an item name contains iron
+     * Checks if an item name holds a scan pattern token (iron by default), ores and storage blocks aside
      */
     public static boolean isIronVariant(String itemName) {
-        String lower = itemName.toLowerCase();
-        return lower.contains("iron") && !lower.contains("iron_ore") && !lower.contains("iron_block");
+        return ScanPatternMatcher.get().matches(itemName) && !NOT_VARIANTS.matches(itemName);
     }
 
     /**
@@ -42,10 +42,10 @@ public class ItemUtils {
     }
 
     /**
-     * Converts an item name to a variant name
+     * Converts an item name to a variant name, replacing its scan pattern tokens with the tier
      */
     public static String toVariantName(String itemName, String tier) {
-        return itemName.replace("iron", tier.toLowerCase());
+        return ScanPatternMatcher.get().replace(itemName, tier.toLowerCase());
     }
 
     /**
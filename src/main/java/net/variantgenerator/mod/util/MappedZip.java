@@ -0,0 +1,239 @@
+package net.variantgenerator.mod.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only view of a zip or jar file through a memory mapping
+ *
+ * Only the central directory is parsed when the file is opened, and only
+ * entries under a name prefix are indexed. STORED entries are returned as
+ * zero-copy slices of the mapping; DEFLATED entries are inflated into a
+ * per-thread buffer that is reused by the next read on the same thread. Nothing
+ * is extracted to disk.
+ */
+public final class MappedZip {
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final int MAX_KEPT_BUFFER = 256 * 1024; // a 256x256 RGBA texture; larger entries get their own array
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[16 * 1024]);
+
+    /**
+     * An indexed entry: where its data lives and how it is stored
+     */
+    public record Entry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+    }
+
+    private final Path path;
+    private final MappedByteBuffer map;
+    private final Map<String, Entry> entries;
+
+    private MappedZip(Path path, MappedByteBuffer map, Map<String, Entry> entries) {
+        this.path = path;
+        this.map = map;
+        this.entries = entries;
+    }
+
+    /**
+     * Maps a zip file and indexes the entries whose names start with a prefix
+     * Directory entries and entries that need zip64 sizes are skipped
+     */
+    public static MappedZip open(Path path, String prefix) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Zip file too large to map: " + path);
+            }
+            // The mapping stays valid after the channel is closed
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+
+        return new MappedZip(path, map, readCentralDirectory(path, map, prefix.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Map<String, Entry> readCentralDirectory(Path path, ByteBuffer map, byte[] prefix) throws IOException {
+        int end = findEndOfCentralDirectory(map);
+        if (end < 0) {
+            throw new IOException("Not a zip file: " + path);
+        }
+
+        long count = map.getShort(end + 10) & 0xFFFF;
+        long directoryOffset = map.getInt(end + 16) & 0xFFFFFFFFL;
+
+        // Large jars keep the real values in the zip64 record
+        if ((count == 0xFFFF || directoryOffset == 0xFFFFFFFFL) && end >= 20 && map.getInt(end - 20) == ZIP64_LOCATOR) {
+            long zip64End = map.getLong(end - 12);
+            if (zip64End < 0 || zip64End > map.limit() - 56 || map.getInt((int) zip64End) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+                throw new IOException("Corrupt zip64 directory: " + path);
+            }
+            count = map.getLong((int) zip64End + 32);
+            directoryOffset = map.getLong((int) zip64End + 48);
+        }
+        if (directoryOffset < 0 || directoryOffset > end) {
+            throw new IOException("Corrupt zip directory: " + path);
+        }
+
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        int position = (int) directoryOffset;
+        for (long i = 0; i < count; i++) {
+            if (position > end - 46 || map.getInt(position) != CENTRAL_HEADER) {
+                throw new IOException("Corrupt zip directory entry in " + path);
+            }
+            int method = map.getShort(position + 10) & 0xFFFF;
+            long crc = map.getInt(position + 16) & 0xFFFFFFFFL;
+            long compressedSize = map.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = map.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = map.getShort(position + 28) & 0xFFFF;
+            int extraLength = map.getShort(position + 30) & 0xFFFF;
+            int commentLength = map.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = map.getInt(position + 42) & 0xFFFFFFFFL;
+            int nameStart = position + 46;
+
+            if (startsWith(map, nameStart, nameLength, prefix)
+                    && map.get(nameStart + nameLength - 1) != '/'
+                    && compressedSize != 0xFFFFFFFFL && size != 0xFFFFFFFFL && localHeaderOffset != 0xFFFFFFFFL
+                    && (method == STORED || method == DEFLATED)) {
+                byte[] name = new byte[nameLength];
+                map.get(nameStart, name);
+                String entryName = new String(name, StandardCharsets.UTF_8);
+                entries.put(entryName, new Entry(entryName, method, crc, compressedSize, size, localHeaderOffset));
+            }
+
+            position = nameStart + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer map) {
+        int last = map.limit() - 22;
+        int first = Math.max(0, last - MAX_COMMENT);
+        for (int position = last; position >= first; position--) {
+            if (map.getInt(position) == END_OF_CENTRAL_DIRECTORY) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(ByteBuffer map, int start, int length, byte[] prefix) {
+        if (length <= prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (map.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the path of the mapped file
+     */
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * Gets the indexed entries, in central directory order
+     */
+    public Collection<Entry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Finds an indexed entry by name, or returns null
+     */
+    public Entry find(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Reads an entry's contents
+     * STORED entries are a read-only slice of the mapping. DEFLATED entries are
+     * inflated into this thread's buffer, which the next read on the thread reuses
+     * (entries past MAX_KEPT_BUFFER get an array of their own),
+     * so copy the data if it has to outlive that.
+     */
+    public ByteBuffer read(Entry entry) throws IOException {
+        return read(entry, entry.size());
+    }
+
+    /**
+     * Reads at most the first length bytes of an entry, inflating no more than needed
+     */
+    public ByteBuffer read(Entry entry, long length) throws IOException {
+        int wanted = (int) Math.min(entry.size(), length);
+        ByteBuffer data = rawData(entry);
+
+        if (entry.method() == STORED) {
+            return data.slice(0, wanted).asReadOnlyBuffer();
+        }
+
+        // Worker threads outlive the scan, so each keeps a buffer of a bounded size
+        byte[] buffer = BUFFER.get();
+        if (wanted > MAX_KEPT_BUFFER) {
+            buffer = new byte[wanted];
+        } else if (buffer.length < wanted) {
+            buffer = new byte[Math.min(Math.max(wanted, buffer.length * 2), MAX_KEPT_BUFFER)];
+            BUFFER.set(buffer);
+        }
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(data);
+        int inflated = 0;
+        try {
+            while (inflated < wanted) {
+                int n = inflater.inflate(buffer, inflated, wanted - inflated);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated zip entry " + entry.name() + " in " + path);
+                }
+                inflated += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt zip entry " + entry.name() + " in " + path, e);
+        }
+        return ByteBuffer.wrap(buffer, 0, wanted);
+    }
+
+    /**
+     * Gets the stored (possibly compressed) bytes of an entry as a slice of the mapping
+     */
+    private ByteBuffer rawData(Entry entry) throws IOException {
+        long header = entry.localHeaderOffset();
+        if (header > map.limit() - 30 || map.getInt((int) header) != LOCAL_HEADER) {
+            throw new IOException("Corrupt local header for " + entry.name() + " in " + path);
+        }
+        int nameLength = map.getShort((int) header + 26) & 0xFFFF;
+        int extraLength = map.getShort((int) header + 28) & 0xFFFF;
+        long dataStart = header + 30 + nameLength + extraLength;
+        if (dataStart + entry.compressedSize() > map.limit()) {
+            throw new IOException("Truncated zip entry " + entry.name() + " in " + path);
+        }
+        return map.slice((int) dataStart, (int) entry.compressedSize());
+    }
+}
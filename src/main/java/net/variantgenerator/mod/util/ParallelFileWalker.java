@@ -0,0 +1,109 @@
+package net.variantgenerator.mod.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Directory walker that prunes before descending and lists directories in parallel
+ *
+ * Every directory is listed by its own task on the shared worker pool, so sibling
+ * subtrees (for example the namespaces under assets/) are walked concurrently.
+ * A directory the filter rejects is never opened. Like Files.walk, symbolic links
+ * are not followed. Unreadable directories and entries are logged and skipped.
+ */
+public final class ParallelFileWalker {
+    private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-FileWalker");
+
+    private ParallelFileWalker() {
+    }
+
+    /**
+     * Decides whether to descend into a directory
+     * The depth of an entry directly inside the start directory is 1
+     */
+    @FunctionalInterface
+    public interface DirectoryFilter {
+        boolean enter(Path directory, int depth);
+    }
+
+    /**
+     * Receives every regular file reached; called concurrently from several threads
+     */
+    @FunctionalInterface
+    public interface FileVisitor {
+        void visit(Path file, BasicFileAttributes attributes, int depth);
+    }
+
+    /**
+     * Walks a directory tree, returning once every file has been visited
+     * Does nothing if start is not a directory
+     */
+    public static void walk(Path start, DirectoryFilter filter, FileVisitor visitor) {
+        if (!Files.isDirectory(start)) {
+            return;
+        }
+        WorkerPool.get().invoke(new DirectoryTask(start, 0, filter, visitor));
+    }
+
+    // ForkJoin tasks are Serializable, but this one is never serialized
+    @SuppressWarnings("serial")
+    private static final class DirectoryTask extends RecursiveAction {
+        private final Path directory;
+        private final int depth;
+        private final DirectoryFilter filter;
+        private final FileVisitor visitor;
+
+        DirectoryTask(Path directory, int depth, DirectoryFilter filter, FileVisitor visitor) {
+            this.directory = directory;
+            this.depth = depth;
+            this.filter = filter;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> children = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        // Deleted during the walk or not accessible: only this entry is skipped
+                        LOGGER.warn("Could not read file attributes: {}", entry, e);
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        if (filter.enter(entry, depth + 1)) {
+                            DirectoryTask child = new DirectoryTask(entry, depth + 1, filter, visitor);
+                            child.fork();
+                            children.add(child);
+                        }
+                    } else if (attributes.isRegularFile()) {
+                        visitor.visit(entry, attributes, depth + 1);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not list directory: {}", directory, e);
+            } catch (DirectoryIteratorException e) {
+                // Iteration failed part way; the entries listed so far are kept
+                LOGGER.warn("Could not list directory: {}", directory, e.getCause());
+            }
+
+            for (DirectoryTask child : children) {
+                child.join();
+            }
+        }
+    }
+}
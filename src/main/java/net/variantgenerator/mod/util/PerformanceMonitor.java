@@ -4,10 +4,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Monitors performance metrics of the variant generator
  * Tracks generation times, cache hits, and system performance
+ * Safe to use from the parallel generation workers
  */
 public class PerformanceMonitor {
     private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-Performance");
@@ -19,8 +22,8 @@ public class PerformanceMonitor {
         public String name;
         public long startTime;
         public long endTime;
-        public long duration;
-        public boolean completed;
+        public volatile long duration;
+        public volatile boolean completed;
 
         public Metric(String name) {
             this.name = name;
@@ -41,8 +44,8 @@ public class PerformanceMonitor {
         }
     }
 
-    private static final Map<String, List<Metric>> METRICS = new HashMap<>();
-    private static final Map<String, Long> CACHE_STATS = new HashMap<>();
+    private static final Map<String, Queue<Metric>> METRICS = new ConcurrentHashMap<>();
+    private static final Map<String, Long> CACHE_STATS = new ConcurrentHashMap<>();
 
     static {
         CACHE_STATS.put("color_cache_hits", 0L);
@@ -56,7 +59,7 @@ public class PerformanceMonitor {
      */
     public static Metric startMetric(String name) {
         Metric metric = new Metric(name);
-        METRICS.computeIfAbsent(name, k -> new ArrayList<>()).add(metric);
+        METRICS.computeIfAbsent(name, k -> new ConcurrentLinkedQueue<>()).add(metric);
         LOGGER.debug("Started metric: {}", name);
         return metric;
     }
@@ -65,29 +68,35 @@ public class PerformanceMonitor {
      * Records a cache hit
      */
     public static void recordCacheHit(String cacheType) {
-        String key = cacheType + "_cache_hits";
-        CACHE_STATS.put(key, CACHE_STATS.getOrDefault(key, 0L) + 1);
+        CACHE_STATS.merge(cacheType + "_cache_hits", 1L, Long::sum);
+    }
+
+    /**
+     * Records a cache miss
+     */
+    public static void recordCacheMiss(String cacheType) {
+        CACHE_STATS.merge(cacheType + "_cache_misses", 1L, Long::sum);
     }
 
     /**
      * Records a variant generation
      */
     public static void recordVariantGenerated() {
-        CACHE_STATS.put("total_variants_generated", CACHE_STATS.get("total_variants_generated") + 1);
+        CACHE_STATS.merge("total_variants_generated", 1L, Long::sum);
     }
 
     /**
      * Records a texture processing
      */
     public static void recordTextureProcessed() {
-        CACHE_STATS.put("total_textures_processed", CACHE_STATS.get("total_textures_processed") + 1);
+        CACHE_STATS.merge("total_textures_processed", 1L, Long::sum);
     }
 
     /**
      * Gets average duration for a metric
      */
     public static long getAverageDuration(String metricName) {
-        List<Metric> metrics = METRICS.getOrDefault(metricName, new ArrayList<>());
+        Collection<Metric> metrics = METRICS.getOrDefault(metricName, new ArrayDeque<>());
         if (metrics.isEmpty()) return 0;
 
         long totalDuration = metrics.stream()
@@ -105,6 +114,13 @@ public class PerformanceMonitor {
         return CACHE_STATS.getOrDefault(cacheType + "_cache_hits", 0L);
     }
 
+    /**
+     * Gets cache miss count
+     */
+    public static long getCacheMissCount(String cacheType) {
+        return CACHE_STATS.getOrDefault(cacheType + "_cache_misses", 0L);
+    }
+
     /**
      * Gets total variants generated
      */
@@ -128,6 +144,8 @@ public class PerformanceMonitor {
         LOGGER.info("Total Textures Processed: {}", getTotalTexturesProcessed());
         LOGGER.info("Color Cache Hits: {}", getCacheHitCount("color"));
         LOGGER.info("Stat Cache Hits: {}", getCacheHitCount("stat"));
+        LOGGER.info("Generation Cache: {} hits, {} misses",
+            getCacheHitCount("generation"), getCacheMissCount("generation"));
         LOGGER.info("Average Metric Times:");
 
         METRICS.keySet().forEach(metricName -> {
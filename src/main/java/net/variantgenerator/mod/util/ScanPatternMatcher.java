@@ -0,0 +1,268 @@
+package net.variantgenerator.mod.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Matches scan patterns (such as "iron") as whole tokens of item names and resource paths
+ *
+ * The patterns are compiled once into an Aho-Corasick automaton with every
+ * transition precomputed, so matching is one table lookup per character, finds
+ * all patterns in a single pass and allocates nothing. Matching is ASCII
+ * case-insensitive. A pattern only counts where it is bounded by token
+ * delimiters ('_', '/', '.', ':') or the ends of the matched range, so "iron"
+ * matches iron_sword and raw_iron.png but not environment_block or ironwood.
+ * Delimiters inside a pattern ("iron_") must appear literally and are kept when
+ * a match is replaced.
+ */
+public final class ScanPatternMatcher {
+    /**
+     * Patterns used until configure is called, the same as the scanning config defaults
+     */
+    public static final String[] DEFAULT_PATTERNS = {"iron_", "iron"};
+
+    private static final int ALPHABET = 128; // patterns are ASCII; any other character resets the automaton
+
+    private static volatile ScanPatternMatcher current = compile(DEFAULT_PATTERNS);
+
+    private final String[] patterns;
+    private final int[] transitions; // state * ALPHABET + character -> next state
+    private final int[][] outputs; // patterns ending in each state, through suffix links too
+
+    private ScanPatternMatcher(String[] patterns, int[] transitions, int[][] outputs) {
+        this.patterns = patterns;
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Sets the patterns of the shared matcher
+     */
+    public static void configure(String... patterns) {
+        current = compile(patterns);
+    }
+
+    /**
+     * Gets the shared matcher, compiled from the configured scan patterns
+     */
+    public static ScanPatternMatcher get() {
+        return current;
+    }
+
+    /**
+     * Compiles patterns into a matcher
+     * Patterns must be ASCII and hold at least one character other than a delimiter
+     */
+    public static ScanPatternMatcher compile(String... patterns) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String pattern : patterns) {
+            String lower = pattern.toLowerCase(Locale.ROOT);
+            if (coreStart(lower) == lower.length()) {
+                throw new IllegalArgumentException("Scan pattern has no token: '" + pattern + "'");
+            }
+            for (int i = 0; i < lower.length(); i++) {
+                if (lower.charAt(i) >= ALPHABET) {
+                    throw new IllegalArgumentException("Scan pattern is not ASCII: '" + pattern + "'");
+                }
+            }
+            unique.add(lower);
+        }
+        if (unique.isEmpty()) {
+            throw new IllegalArgumentException("At least one scan pattern is required");
+        }
+        String[] compiled = unique.toArray(new String[0]);
+
+        // Trie of the patterns
+        List<int[]> children = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        children.add(newNode());
+        terminal.add(-1);
+        for (int p = 0; p < compiled.length; p++) {
+            int state = 0;
+            for (int i = 0; i < compiled[p].length(); i++) {
+                char c = compiled[p].charAt(i);
+                if (children.get(state)[c] < 0) {
+                    children.get(state)[c] = children.size();
+                    children.add(newNode());
+                    terminal.add(-1);
+                }
+                state = children.get(state)[c];
+            }
+            terminal.set(state, p);
+        }
+
+        // Breadth-first: failure links, then full transitions and outputs from those of shallower states
+        int states = children.size();
+        int[] transitions = new int[states * ALPHABET];
+        int[] failure = new int[states];
+        int[][] outputs = new int[states][];
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+
+        outputs[0] = new int[0];
+        for (int c = 0; c < ALPHABET; c++) {
+            int child = children.get(0)[c];
+            if (child < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = child;
+                failure[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int[] inherited = outputs[failure[state]];
+            outputs[state] = terminal.get(state) < 0 ? inherited : prepend(terminal.get(state), inherited);
+
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = children.get(state)[c];
+                int fallback = transitions[failure[state] * ALPHABET + c];
+                if (child < 0) {
+                    transitions[state * ALPHABET + c] = fallback;
+                } else {
+                    transitions[state * ALPHABET + c] = child;
+                    failure[child] = fallback;
+                    queue[tail++] = child;
+                }
+            }
+        }
+        return new ScanPatternMatcher(compiled, transitions, outputs);
+    }
+
+    /**
+     * Checks whether any pattern occurs as a token of the text
+     */
+    public boolean matches(CharSequence text) {
+        return matches(text, 0, text.length());
+    }
+
+    /**
+     * Checks whether any pattern occurs as a token of text[from, to)
+     * The range ends count as token boundaries, so a file name can be matched in place within a path
+     */
+    public boolean matches(CharSequence text, int from, int to) {
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = next(state, text.charAt(i));
+            for (int pattern : outputs[state]) {
+                if (isToken(text, from, to, pattern, i + 1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces every pattern token of the text with a replacement
+     */
+    public String replace(CharSequence text, String replacement) {
+        return replace(text, 0, text.length(), replacement);
+    }
+
+    /**
+     * Replaces every pattern token within text[from, to) with a replacement, keeping the rest of the text
+     * Where matches overlap the leftmost, then longest, wins; delimiters a pattern
+     * spells out are kept, so "iron_" in iron_sword leaves netherite_sword
+     */
+    public String replace(CharSequence text, int from, int to, String replacement) {
+        // Token spans (start, end) in the order their matches end
+        int[] spans = new int[8];
+        int count = 0;
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = next(state, text.charAt(i));
+            for (int pattern : outputs[state]) {
+                if (isToken(text, from, to, pattern, i + 1)) {
+                    String matched = patterns[pattern];
+                    int start = i + 1 - matched.length();
+                    if (count * 2 == spans.length) {
+                        spans = Arrays.copyOf(spans, spans.length * 2);
+                    }
+                    spans[count * 2] = start + coreStart(matched);
+                    spans[count * 2 + 1] = start + coreEnd(matched);
+                    count++;
+                }
+            }
+        }
+
+        StringBuilder result = new StringBuilder(text.length() + count * replacement.length());
+        int copied = 0;
+        while (true) {
+            // Leftmost, then longest span starting at or after the copied position
+            int best = -1;
+            for (int s = 0; s < count; s++) {
+                int start = spans[s * 2];
+                if (start >= copied && (best < 0 || start < spans[best * 2]
+                        || (start == spans[best * 2] && spans[s * 2 + 1] > spans[best * 2 + 1]))) {
+                    best = s;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            result.append(text, copied, spans[best * 2]).append(replacement);
+            copied = spans[best * 2 + 1];
+        }
+        return result.append(text, copied, text.length()).toString();
+    }
+
+    private int next(int state, char c) {
+        if (c >= ALPHABET) {
+            return 0;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            c += 'a' - 'A';
+        }
+        return transitions[state * ALPHABET + c];
+    }
+
+    /**
+     * Checks the token boundaries of a pattern ending (exclusive) at end
+     */
+    private boolean isToken(CharSequence text, int from, int to, int pattern, int end) {
+        String matched = patterns[pattern];
+        int start = end - matched.length();
+        boolean startBounded = start == from || isDelimiter(matched.charAt(0)) || isDelimiter(text.charAt(start - 1));
+        boolean endBounded = end == to || isDelimiter(matched.charAt(matched.length() - 1)) || isDelimiter(text.charAt(end));
+        return startBounded && endBounded;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == '_' || c == '/' || c == '.' || c == ':';
+    }
+
+    private static int coreStart(String pattern) {
+        int start = 0;
+        while (start < pattern.length() && isDelimiter(pattern.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int coreEnd(String pattern) {
+        int end = pattern.length();
+        while (end > 0 && isDelimiter(pattern.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    private static int[] prepend(int pattern, int[] patterns) {
+        int[] result = new int[patterns.length + 1];
+        result[0] = pattern;
+        System.arraycopy(patterns, 0, result, 1, patterns.length);
+        return result;
+    }
+}
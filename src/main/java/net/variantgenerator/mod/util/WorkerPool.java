@@ -0,0 +1,141 @@
+package net.variantgenerator.mod.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared ForkJoin pool for variant generation work, and a small pool for its file I/O
+ *
+ * Worker threads carry the mod class loader as their context class loader,
+ * so code running on them resolves mod classes the same way the setup thread does.
+ */
+public final class WorkerPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-WorkerPool");
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * Default number of I/O threads
+     */
+    public static final int DEFAULT_IO_THREADS = 4;
+
+    private static ForkJoinPool pool;
+    private static int configuredThreads = 0;
+    private static ExecutorService ioPool;
+    private static int configuredIoThreads = DEFAULT_IO_THREADS;
+
+    private WorkerPool() {
+    }
+
+    /**
+     * Sets the number of worker threads (0 = one per available processor)
+     * Takes effect the next time the pool is created
+     */
+    public static synchronized void configure(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Thread count must be >= 0");
+        }
+        if (threads != configuredThreads) {
+            configuredThreads = threads;
+            shutdown();
+        }
+    }
+
+    /**
+     * Sets the number of I/O threads
+     * Takes effect the next time the I/O pool is created
+     */
+    public static synchronized void configureIo(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("I/O thread count must be >= 1");
+        }
+        if (threads != configuredIoThreads) {
+            configuredIoThreads = threads;
+            shutdownIo();
+        }
+    }
+
+    /**
+     * Gets the shared pool, creating it on first use
+     */
+    public static synchronized ForkJoinPool get() {
+        if (pool == null || pool.isShutdown()) {
+            int parallelism = configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+            pool = new ForkJoinPool(parallelism, WorkerPool::newThread, null, false);
+            LOGGER.debug("Created worker pool with {} threads", parallelism);
+        }
+        return pool;
+    }
+
+    /**
+     * Gets the I/O pool, creating it on first use
+     * Its threads are long-lived platform threads, so the per-thread inflaters and
+     * deflaters of the decoders and sinks are reused across tasks
+     */
+    public static synchronized ExecutorService io() {
+        if (ioPool == null || ioPool.isShutdown()) {
+            AtomicInteger counter = new AtomicInteger();
+            ioPool = Executors.newFixedThreadPool(configuredIoThreads, task -> {
+                Thread thread = new Thread(task, "VariantGenerator-IO-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setContextClassLoader(WorkerPool.class.getClassLoader());
+                return thread;
+            });
+            LOGGER.debug("Created I/O pool with {} threads", configuredIoThreads);
+        }
+        return ioPool;
+    }
+
+    /**
+     * Gets the parallelism of the shared pool
+     */
+    public static int parallelism() {
+        return get().getParallelism();
+    }
+
+    /**
+     * Shuts down the shared pools, letting queued work finish
+     */
+    public static synchronized void shutdown() {
+        shutdownIo();
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+                    LOGGER.warn("Worker pool did not terminate in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pool = null;
+        }
+    }
+
+    private static void shutdownIo() {
+        if (ioPool != null) {
+            ioPool.shutdown();
+            try {
+                if (!ioPool.awaitTermination(30, TimeUnit.SECONDS)) {
+                    LOGGER.warn("I/O pool did not terminate in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ioPool = null;
+        }
+    }
+
+    private static ForkJoinWorkerThread newThread(ForkJoinPool forkJoinPool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+        thread.setName("VariantGenerator-Worker-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        thread.setContextClassLoader(WorkerPool.class.getClassLoader());
+        return thread;
+    }
+}
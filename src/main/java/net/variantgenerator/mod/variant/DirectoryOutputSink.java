@@ -0,0 +1,76 @@
+package net.variantgenerator.mod.variant;
+
+import net.variantgenerator.mod.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Writes generated resources as loose files under a root directory
+ *
+ * With the root "." entries land next to the scanned assets/ sources, which is
+ * where variants have always been written. Outputs that are already up to date
+ * are left untouched, and identical textures are hard-linked where possible.
+ */
+public class DirectoryOutputSink implements OutputSink {
+    private final Path root;
+    private final GenerationCache cache;
+
+    public DirectoryOutputSink(Path root, GenerationCache cache) {
+        this.root = root;
+        this.cache = cache;
+    }
+
+    @Override
+    public boolean restoreTexture(String entry, long key) throws IOException {
+        return cache != null && cache.restore(key, resolve(entry));
+    }
+
+    @Override
+    public void writeTexture(String entry, long key, byte[] png) throws IOException {
+        Path output = resolve(entry);
+        if (cache != null) {
+            cache.write(key, png, output);
+        } else {
+            FileUtils.writeAtomically(output, png);
+        }
+    }
+
+    @Override
+    public Share shareTexture(String entry, long key, String writtenEntry, byte[] png) throws IOException {
+        Path written = resolve(writtenEntry);
+        Path output = resolve(entry);
+        boolean linked = cache != null ? cache.share(key, written, output) : FileUtils.linkOrCopy(written, output);
+        return linked ? Share.LINKED : Share.COPIED;
+    }
+
+    @Override
+    public void writeFile(String entry, byte[] data) throws IOException {
+        Path output = resolve(entry);
+        if (Files.exists(output) && Files.size(output) == data.length && Arrays.equals(Files.readAllBytes(output), data)) {
+            return;
+        }
+        FileUtils.writeAtomically(output, data);
+    }
+
+    @Override
+    public String location(String entry) {
+        return root.resolve(entry).toAbsolutePath().normalize().toString();
+    }
+
+    @Override
+    public void close() {
+        // Every entry is written as it arrives
+    }
+
+    private Path resolve(String entry) throws IOException {
+        Path path = root.resolve(entry);
+        Path parent = path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,102 @@
+package net.variantgenerator.mod.variant;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+
+/**
+ * A source texture stored as a loose file under a resource root
+ */
+public final class FileTextureSource implements TextureSource {
+    private final Path root;
+    private final Path file;
+    private final String entry;
+    private final long size;
+    private final long modified;
+    private final Map<String, TextureSource> index; // files of the same root found by a scan, or null
+
+    public FileTextureSource(Path root, Path file, BasicFileAttributes attributes) {
+        this(root, file, attributes, null);
+    }
+
+    /**
+     * Creates a source whose companions are looked up in the files a scan found under
+     * the same root instead of on disk
+     */
+    public FileTextureSource(Path root, Path file, BasicFileAttributes attributes, Map<String, TextureSource> index) {
+        this.root = root;
+        this.file = file;
+        this.entry = root.relativize(file).toString().replace('\\', '/');
+        this.size = attributes.size();
+        this.modified = attributes.lastModifiedTime().toMillis();
+        this.index = index;
+    }
+
+    /**
+     * Creates a source for a file, reading its attributes
+     */
+    public static FileTextureSource of(Path root, Path file) throws IOException {
+        return new FileTextureSource(root, file, Files.readAttributes(file, BasicFileAttributes.class));
+    }
+
+    /**
+     * Gets the file
+     */
+    public Path file() {
+        return file;
+    }
+
+    @Override
+    public String entry() {
+        return entry;
+    }
+
+    @Override
+    public String id() {
+        return file.toString();
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public long stamp() {
+        return modified;
+    }
+
+    @Override
+    public ByteBuffer read() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file));
+    }
+
+    @Override
+    public ByteBuffer readHeader(int length) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return ByteBuffer.wrap(in.readNBytes(length));
+        }
+    }
+
+    @Override
+    public TextureSource companion(String suffix) {
+        if (index != null) {
+            return index.get(entry + suffix);
+        }
+        Path companion = file.resolveSibling(file.getFileName() + suffix);
+        try {
+            return Files.isRegularFile(companion) ? of(root, companion) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return id();
+    }
+}
@@ -0,0 +1,474 @@
+package net.variantgenerator.mod.variant;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import net.variantgenerator.mod.texture.GradientLut;
+import net.variantgenerator.mod.texture.PixelKernels;
+import net.variantgenerator.mod.texture.PngDecoder;
+import net.variantgenerator.mod.texture.PngEncoder;
+import net.variantgenerator.mod.texture.SpriteMipmaps;
+import net.variantgenerator.mod.texture.TextureRaster;
+import net.variantgenerator.mod.texture.TextureScaler;
+import net.variantgenerator.mod.util.ContentHash;
+import net.variantgenerator.mod.util.FileUtils;
+import net.variantgenerator.mod.util.PerformanceMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Persistent, content-addressed cache of generated variant textures
+ *
+ * Every generated texture is stored under a key made of the source's pixel
+ * content hash, the tier palette's table hash and the kernel and encoder
+ * versions, so a changed source, palette, kernel or encoder simply misses, while
+ * byte-different copies of the same pixels share entries. Normalized textures
+ * and the mip levels of a texture get keys derived from that one. A manifest records the size and
+ * modification time of each source and output it has seen: on a warm start
+ * unchanged sources are not even read, and outputs that are still in place are
+ * not rewritten. Stored objects are copies, never links to outputs, so an
+ * output edited in place cannot change what other outputs are restored from.
+ * Saving after a complete run drops the manifest entries of sources and outputs
+ * the run did not see, then prunes the objects no remaining output that still
+ * exists refers to and the run did not use, so neither the manifest nor the
+ * objects grow with every palette, version, mod or output directory change.
+ * Saving after a failed run only adds what it wrote, keeping the entries and
+ * objects of the groups it never reached.
+ *
+ * <pre>
+ * cache/
+ *   manifest.json
+ *   objects/ab/ab12...ef.png
+ * </pre>
+ */
+public class GenerationCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-Cache");
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final int MANIFEST_VERSION = 2;
+
+    /**
+     * Recorded state of a file, used to tell whether it changed since the last run
+     * For sources inside jars, modified holds the entry CRC (see TextureSource.stamp)
+     */
+    static class FileEntry {
+        long size;
+        long modified;
+        String hash;
+
+        FileEntry() {
+        }
+
+        FileEntry(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Recorded mip chain of a texture, whose levels are stored under mipKey(key, level)
+     */
+    static class MipmapEntry {
+        String base; // content hash of the texture the levels were built from
+        int levels;
+
+        MipmapEntry() {
+        }
+
+        MipmapEntry(String base, int levels) {
+            this.base = base;
+            this.levels = levels;
+        }
+    }
+
+    /**
+     * On-disk manifest layout
+     */
+    static class Manifest {
+        int version = MANIFEST_VERSION;
+        Map<String, FileEntry> sources = new ConcurrentHashMap<>();
+        Map<String, FileEntry> outputs = new ConcurrentHashMap<>();
+        Map<String, MipmapEntry> mipmaps = new ConcurrentHashMap<>(); // by texture key
+    }
+
+    private final Path directory;
+    private final Path objects;
+    private final Path manifestFile;
+    private Manifest manifest = new Manifest();
+    private volatile boolean dirty;
+
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+    private final Set<String> seenSources = ConcurrentHashMap.newKeySet();
+    private final Set<String> seenOutputs = ConcurrentHashMap.newKeySet();
+    private final Set<String> seenMipmaps = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public GenerationCache(Path directory) {
+        this.directory = directory;
+        this.objects = directory.resolve("objects");
+        this.manifestFile = directory.resolve("manifest.json");
+    }
+
+    /**
+     * Loads the manifest from disk; a missing or unreadable manifest starts an empty one
+     */
+    public void load() {
+        hits.set(0);
+        misses.set(0);
+        used.clear();
+        seenSources.clear();
+        seenOutputs.clear();
+        seenMipmaps.clear();
+        if (!Files.exists(manifestFile)) {
+            return;
+        }
+
+        try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            Manifest loaded = GSON.fromJson(reader, Manifest.class);
+            if (loaded != null && loaded.version == MANIFEST_VERSION && loaded.sources != null && loaded.outputs != null) {
+                // Gson fills plain maps; re-wrap them for concurrent updates
+                loaded.sources = new ConcurrentHashMap<>(loaded.sources);
+                loaded.outputs = new ConcurrentHashMap<>(loaded.outputs);
+                // Manifests written before mip chains were cached have none
+                loaded.mipmaps = loaded.mipmaps != null ? new ConcurrentHashMap<>(loaded.mipmaps) : new ConcurrentHashMap<>();
+                manifest = loaded;
+                LOGGER.debug("Loaded generation cache manifest: {} sources, {} outputs",
+                        manifest.sources.size(), manifest.outputs.size());
+            } else {
+                LOGGER.info("Ignoring generation cache manifest from another version");
+            }
+        } catch (IOException | JsonParseException e) {
+            LOGGER.warn("Could not read generation cache manifest, starting empty", e);
+        }
+    }
+
+    /**
+     * Writes the manifest back to disk if anything changed
+     * After a complete run the entries it did not see are dropped first and unreferenced
+     * objects pruned after. An incomplete run did not see everything it would have used,
+     * so its entries are merged into the loaded ones and nothing is dropped or pruned.
+     */
+    public void save(boolean complete) {
+        boolean dropped = false;
+        if (complete) {
+            dropped = manifest.sources.keySet().retainAll(seenSources);
+            dropped |= manifest.outputs.keySet().retainAll(seenOutputs);
+            dropped |= manifest.mipmaps.keySet().retainAll(seenMipmaps);
+        }
+        if (!dirty && !dropped) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "manifest", ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                GSON.toJson(manifest, writer);
+            }
+            FileUtils.moveReplacing(temp, manifestFile);
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.warn("Could not save generation cache manifest", e);
+            return;
+        }
+        if (complete) {
+            prune();
+        }
+    }
+
+    /**
+     * Deletes every stored object that no existing recorded output refers to and this run did not use
+     * Objects served to outputs that are not plain files (a zip pack) are only known
+     * through the run that used them
+     */
+    private void prune() {
+        if (!Files.isDirectory(objects)) {
+            return;
+        }
+        Set<String> referenced = new HashSet<>(used);
+        manifest.outputs.forEach((name, output) -> {
+            if (Files.isRegularFile(Path.of(name))) {
+                referenced.add(output.hash + ".png");
+            }
+        });
+
+        int pruned = 0;
+        try (Stream<Path> files = Files.walk(objects, 2)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                    pruned++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("Could not prune the generation cache", e);
+        }
+        if (pruned > 0) {
+            LOGGER.info("Pruned {} unused textures from the generation cache", pruned);
+        }
+    }
+
+    /**
+     * Gets the recorded pixel hash of a source texture without reading it
+     * Returns null if the source is new or its size or stamp changed
+     */
+    public Long cachedSourceHash(TextureSource source) {
+        seenSources.add(source.id());
+        FileEntry entry = manifest.sources.get(source.id());
+        if (entry == null || entry.hash == null || entry.size != source.size() || entry.modified != source.stamp()) {
+            return null;
+        }
+        try {
+            return Long.parseUnsignedLong(entry.hash, 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records the pixel hash of a source texture that was just decoded
+     */
+    public void recordSource(TextureSource source, long hash) {
+        seenSources.add(source.id());
+        manifest.sources.put(source.id(), new FileEntry(source.size(), source.stamp(), ContentHash.toHex(hash)));
+        dirty = true;
+    }
+
+    /**
+     * Gets the cache key for one source recolored with one palette
+     */
+    public static long key(long sourceHash, GradientLut palette) {
+        long key = ContentHash.combine(ContentHash.combine(sourceHash, palette.contentHash()), PixelKernels.VERSION);
+        return ContentHash.combine(key, PngEncoder.VERSION);
+    }
+
+    /**
+     * Gets the cache key for one source recolored with one palette and normalized to a width
+     * A width of 0 means the source size is kept, which is the same key as key(sourceHash, palette)
+     */
+    public static long key(long sourceHash, GradientLut palette, int width) {
+        long key = key(sourceHash, palette);
+        return width == 0 ? key : ContentHash.combine(ContentHash.combine(key, TextureScaler.VERSION), width);
+    }
+
+    /**
+     * Gets the cache key of a mip level (1 and up) of the texture stored under a key
+     */
+    public static long mipKey(long key, int level) {
+        return ContentHash.combine(ContentHash.combine(key, TextureScaler.VERSION), -level);
+    }
+
+    /**
+     * Encodes the levels of a mip chain for storeMipmaps, on the stage that encodes textures
+     */
+    public static byte[][] encodeMipmaps(SpriteMipmaps.Chain chain) {
+        byte[][] levels = new byte[chain.depth()][];
+        for (int level = 1; level <= chain.depth(); level++) {
+            levels[level - 1] = PngEncoder.encode(chain.level(level));
+        }
+        return levels;
+    }
+
+    /**
+     * Stores the mip chain of the texture stored under a key, its levels encoded by encodeMipmaps
+     */
+    public void storeMipmaps(long key, long baseHash, byte[][] levels) {
+        for (int level = 1; level <= levels.length; level++) {
+            store(mipKey(key, level), levels[level - 1]);
+        }
+        String name = ContentHash.toHex(key);
+        seenMipmaps.add(name);
+        manifest.mipmaps.put(name, new MipmapEntry(ContentHash.toHex(baseHash), levels.length));
+        dirty = true;
+    }
+
+    /**
+     * Reads and decodes the mip chain stored for the texture under a key
+     * Returns null if none was stored or any of its levels is missing or unreadable
+     */
+    public SpriteMipmaps.Chain loadMipmaps(long key) {
+        String name = ContentHash.toHex(key);
+        MipmapEntry entry = manifest.mipmaps.get(name);
+        if (entry == null || entry.base == null || entry.levels < 0) {
+            return null;
+        }
+
+        try {
+            TextureRaster[] levels = new TextureRaster[entry.levels];
+            for (int level = 1; level <= entry.levels; level++) {
+                levels[level - 1] = PngDecoder.decode(Files.readAllBytes(objectPath(ContentHash.toHex(mipKey(key, level)))));
+            }
+            SpriteMipmaps.Chain chain = new SpriteMipmaps.Chain(Long.parseUnsignedLong(entry.base, 16), levels);
+            seenMipmaps.add(name);
+            return chain;
+        } catch (NoSuchFileException | NumberFormatException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("Could not read cached mip levels of {}", name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Puts the cached texture for a key at an output path
+     * Returns true on a hit: either the output is still the one recorded for this key,
+     * or the stored object was copied there. Returns false if the key was never stored.
+     */
+    public boolean restore(long key, Path output) {
+        String hash = ContentHash.toHex(key);
+        String name = output.toString();
+
+        seenOutputs.add(name);
+        FileEntry recorded = manifest.outputs.get(name);
+        if (recorded != null && hash.equals(recorded.hash) && matches(recorded, output)) {
+            recordHit();
+            return true;
+        }
+
+        Path object = objectPath(hash);
+        if (!Files.isRegularFile(object)) {
+            recordMiss();
+            return false;
+        }
+
+        try {
+            FileUtils.copyAtomically(object, output);
+            recordOutput(name, output, hash);
+            recordHit();
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Could not restore cached texture {} to {}", hash, output, e);
+            recordMiss();
+            return false;
+        }
+    }
+
+    /**
+     * Writes a generated texture to its output path and stores a copy under its key
+     */
+    public void write(long key, byte[] png, Path output) throws IOException {
+        FileUtils.writeAtomically(output, png);
+        recordOutput(output.toString(), output, ContentHash.toHex(key));
+        // A failure to store only loses the cached copy; the output itself was written
+        store(key, png);
+    }
+
+    /**
+     * Puts an already written output of a key at another output path
+     * Used to fan one generated texture out to every identical source
+     * Returns true if a hard link was made, false if the file was copied
+     */
+    public boolean share(long key, Path written, Path output) throws IOException {
+        boolean linked = FileUtils.linkOrCopy(written, output);
+        recordOutput(output.toString(), output, ContentHash.toHex(key));
+        return linked;
+    }
+
+    /**
+     * Reads the stored texture for a key, for outputs that are not plain files
+     * Returns null if the key was never stored
+     */
+    public byte[] load(long key) {
+        Path object = objectPath(ContentHash.toHex(key));
+        try {
+            byte[] png = Files.readAllBytes(object);
+            recordHit();
+            return png;
+        } catch (NoSuchFileException e) {
+            recordMiss();
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("Could not read cached texture {}", object, e);
+            recordMiss();
+            return null;
+        }
+    }
+
+    /**
+     * Stores a generated texture under its key without writing any output
+     */
+    public void store(long key, byte[] png) {
+        String hash = ContentHash.toHex(key);
+        Path object = objectPath(hash);
+        if (Files.exists(object)) {
+            return;
+        }
+        try {
+            Files.createDirectories(object.getParent());
+            FileUtils.writeAtomically(object, png);
+            dirty = true;
+        } catch (IOException e) {
+            LOGGER.warn("Could not store texture {} in the generation cache", hash, e);
+        }
+    }
+
+    /**
+     * Logs the hit and miss counts of this run
+     */
+    public void report() {
+        LOGGER.info("Generation cache: {} hits, {} misses", hits.get(), misses.get());
+    }
+
+    /**
+     * Gets the number of textures served from the cache this run
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of textures that had to be generated this run
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    private void recordHit() {
+        hits.incrementAndGet();
+        PerformanceMonitor.recordCacheHit("generation");
+    }
+
+    private void recordMiss() {
+        misses.incrementAndGet();
+        PerformanceMonitor.recordCacheMiss("generation");
+    }
+
+    private void recordOutput(String name, Path output, String hash) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(output, BasicFileAttributes.class);
+        seenOutputs.add(name);
+        manifest.outputs.put(name, new FileEntry(attributes.size(), attributes.lastModifiedTime().toMillis(), hash));
+        dirty = true;
+    }
+
+    private static boolean matches(FileEntry entry, Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.size() == entry.size && attributes.lastModifiedTime().toMillis() == entry.modified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the path of the object stored under a hash, marking it used by this run
+     */
+    private Path objectPath(String hash) {
+        used.add(hash + ".png");
+        return objects.resolve(hash.substring(0, 2)).resolve(hash + ".png");
+    }
+}
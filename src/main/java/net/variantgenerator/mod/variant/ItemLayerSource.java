@@ -0,0 +1,88 @@
+package net.variantgenerator.mod.variant;
+
+import net.variantgenerator.mod.variant.ItemModelGraph.ItemModel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A source texture found through an item model: one layer of the item
+ *
+ * Reads go to the texture itself, so several items using one texture still form
+ * one group of identical sources. The primary layer, the first one whose texture
+ * was found, is the one that writes the variant item's model and registers it.
+ */
+public final class ItemLayerSource implements TextureSource {
+    private final TextureSource texture;
+    private final ItemModel item;
+    private final int layer;
+    private final boolean primary;
+
+    public ItemLayerSource(TextureSource texture, ItemModel item, int layer, boolean primary) {
+        this.texture = texture;
+        this.item = item;
+        this.layer = layer;
+        this.primary = primary;
+    }
+
+    /**
+     * Gets the item whose model uses the texture
+     */
+    public ItemModel item() {
+        return item;
+    }
+
+    /**
+     * Gets the layer of the item model the texture is on
+     */
+    public int layer() {
+        return layer;
+    }
+
+    /**
+     * Checks whether this layer writes and registers the variant item
+     */
+    public boolean primary() {
+        return primary;
+    }
+
+    @Override
+    public String entry() {
+        return texture.entry();
+    }
+
+    @Override
+    public String id() {
+        return texture.id();
+    }
+
+    @Override
+    public long size() {
+        return texture.size();
+    }
+
+    @Override
+    public long stamp() {
+        return texture.stamp();
+    }
+
+    @Override
+    public ByteBuffer read() throws IOException {
+        return texture.read();
+    }
+
+    @Override
+    public ByteBuffer readHeader(int length) throws IOException {
+        return texture.readHeader(length);
+    }
+
+    @Override
+    public TextureSource companion(String suffix) {
+        return texture.companion(suffix);
+    }
+
+    @Override
+    public String toString() {
+        return item.namespace() + ":" + item.name() + " layer" + layer + " (" + texture + ")";
+    }
+}
@@ -0,0 +1,220 @@
+package net.variantgenerator.mod.variant;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.variantgenerator.mod.util.ScanPatternMatcher;
+import net.variantgenerator.mod.util.WorkerPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Finds the textures items actually render by following their models
+ *
+ * Every item model (assets/&lt;namespace&gt;/models/item/&lt;item&gt;.json) of an item
+ * whose name holds a scan pattern token is read on the worker pool with a
+ * streaming JSON reader that keeps only "parent" and "textures". Parent chains are
+ * resolved through a memo shared by all items, so a common parent (a mod's tool
+ * base model, for example) is read and merged once. The layerN textures of the
+ * resolved model are what the item renders, whatever their file names.
+ */
+public final class ItemModelGraph {
+    private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-ModelGraph");
+    private static final String ITEM_MODELS = "/models/item/";
+    private static final int MAX_DEPTH = 32; // longer parent or #reference chains are cycles
+
+    /**
+     * An item and the textures of its layers
+     *
+     * @param parent the item model's own parent, or null
+     * @param layers texture ids (namespace:path) of layer0, layer1, ...
+     */
+    public record ItemModel(String namespace, String name, String parent, List<String> layers) {
+    }
+
+    /**
+     * The parts of a model file discovery reads
+     */
+    private record Model(String parent, Map<String, String> textures) {
+        static final Model MISSING = new Model(null, Map.of());
+    }
+
+    private final ResourceScan scan;
+    private final Map<String, Model> models = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> resolved = new ConcurrentHashMap<>();
+
+    private ItemModelGraph(ResourceScan scan) {
+        this.scan = scan;
+    }
+
+    /**
+     * Reads the models of every item whose name holds a pattern token, in entry order
+     * Items whose model has no layer (block items, for example) are left out
+     */
+    public static List<ItemModel> discover(ResourceScan scan, ScanPatternMatcher patterns) {
+        long start = System.nanoTime();
+        ItemModelGraph graph = new ItemModelGraph(scan);
+
+        List<ForkJoinTask<ItemModel>> tasks = new ArrayList<>();
+        for (TextureSource model : scan.models()) {
+            String entry = model.entry();
+            int itemStart = entry.indexOf(ITEM_MODELS, "assets/".length());
+            if (itemStart < 0 || entry.indexOf('/', itemStart + ITEM_MODELS.length()) >= 0) {
+                continue; // not directly under models/item/, so not an item
+            }
+            String namespace = entry.substring("assets/".length(), itemStart);
+            String name = entry.substring(itemStart + ITEM_MODELS.length(), entry.length() - ".json".length());
+            if (patterns.matches(name)) {
+                tasks.add(ForkJoinTask.adapt(() -> graph.readItem(namespace, name)));
+            }
+        }
+        WorkerPool.get().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+        List<ItemModel> items = new ArrayList<>();
+        for (ForkJoinTask<ItemModel> task : tasks) {
+            ItemModel item = task.join();
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        LOGGER.info("Resolved {} item models ({} models read) in {} ms",
+                items.size(), graph.models.size(), (System.nanoTime() - start) / 1_000_000);
+        return items;
+    }
+
+    /**
+     * Gets the pack entry of a texture id, for example modid:item/iron_sword is
+     * assets/modid/textures/item/iron_sword.png
+     */
+    public static String textureEntry(String textureId) {
+        int separator = textureId.indexOf(':');
+        String namespace = separator < 0 ? "minecraft" : textureId.substring(0, separator);
+        return "assets/" + namespace + "/textures/" + textureId.substring(separator + 1) + ".png";
+    }
+
+    /**
+     * Gets the texture id of a pack entry under assets/&lt;namespace&gt;/textures/
+     */
+    public static String textureId(String entry) {
+        int namespaceEnd = entry.indexOf('/', "assets/".length());
+        String namespace = entry.substring("assets/".length(), namespaceEnd);
+        int pathStart = namespaceEnd + "/textures/".length();
+        return namespace + ":" + entry.substring(pathStart, entry.length() - ".png".length());
+    }
+
+    private ItemModel readItem(String namespace, String name) {
+        String id = namespace + ":item/" + name;
+        Map<String, String> textures = resolve(id, 0);
+
+        List<String> layers = new ArrayList<>();
+        for (int layer = 0; ; layer++) {
+            String texture = dereference(textures, textures.get("layer" + layer));
+            if (texture == null) {
+                break;
+            }
+            layers.add(texture.indexOf(':') < 0 ? "minecraft:" + texture : texture);
+        }
+        if (layers.isEmpty()) {
+            return null;
+        }
+        return new ItemModel(namespace, name, model(id).parent(), List.copyOf(layers));
+    }
+
+    /**
+     * Gets the textures of a model merged over those of its parents
+     */
+    private Map<String, String> resolve(String id, int depth) {
+        Map<String, String> textures = resolved.get(id);
+        if (textures != null) {
+            return textures;
+        }
+        Model model = model(id);
+        if (model.parent() == null || depth >= MAX_DEPTH) {
+            textures = model.textures();
+        } else {
+            textures = new HashMap<>(resolve(qualify(model.parent()), depth + 1));
+            textures.putAll(model.textures());
+        }
+        Map<String, String> previous = resolved.putIfAbsent(id, textures);
+        return previous != null ? previous : textures;
+    }
+
+    /**
+     * Follows #variable references to a texture id, or gets null if there is none
+     */
+    private static String dereference(Map<String, String> textures, String value) {
+        for (int depth = 0; value != null && value.startsWith("#") && depth < MAX_DEPTH; depth++) {
+            value = textures.get(value.substring(1));
+        }
+        return value == null || value.startsWith("#") ? null : value;
+    }
+
+    /**
+     * Gets a parsed model, reading it on first use; models outside the scan are empty
+     */
+    private Model model(String id) {
+        Model model = models.get(id);
+        if (model != null) {
+            return model;
+        }
+        int separator = id.indexOf(':');
+        TextureSource file = scan.file("assets/" + id.substring(0, separator) + "/models/" + id.substring(separator + 1) + ".json");
+        model = file != null ? parse(file) : Model.MISSING;
+        Model previous = models.putIfAbsent(id, model);
+        return previous != null ? previous : model;
+    }
+
+    private static Model parse(TextureSource file) {
+        String parent = null;
+        Map<String, String> textures = new HashMap<>();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new ByteArrayInputStream(file.readAllBytes()), StandardCharsets.UTF_8))) {
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "parent" -> parent = reader.peek() == JsonToken.STRING ? reader.nextString() : skip(reader);
+                    case "textures" -> readTextures(reader, textures);
+                    default -> reader.skipValue();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not read model: {}", file.id(), e);
+            return Model.MISSING;
+        }
+        return new Model(parent, textures);
+    }
+
+    private static void readTextures(JsonReader reader, Map<String, String> textures) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonToken.STRING) {
+                textures.put(key, reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static String skip(JsonReader reader) throws IOException {
+        reader.skipValue();
+        return null;
+    }
+
+    private static String qualify(String id) {
+        return id.indexOf(':') < 0 ? "minecraft:" + id : id;
+    }
+}
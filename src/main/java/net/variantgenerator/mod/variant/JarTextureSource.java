@@ -0,0 +1,60 @@
+package net.variantgenerator.mod.variant;
+
+import net.variantgenerator.mod.util.MappedZip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A source texture stored inside a memory-mapped mod jar
+ */
+public final class JarTextureSource implements TextureSource {
+    private final MappedZip jar;
+    private final MappedZip.Entry entry;
+
+    public JarTextureSource(MappedZip jar, MappedZip.Entry entry) {
+        this.jar = jar;
+        this.entry = entry;
+    }
+
+    @Override
+    public String entry() {
+        return entry.name();
+    }
+
+    @Override
+    public String id() {
+        return jar.path() + "!/" + entry.name();
+    }
+
+    @Override
+    public long size() {
+        return entry.size();
+    }
+
+    @Override
+    public long stamp() {
+        return entry.crc();
+    }
+
+    @Override
+    public ByteBuffer read() throws IOException {
+        return jar.read(entry);
+    }
+
+    @Override
+    public ByteBuffer readHeader(int length) throws IOException {
+        return jar.read(entry, length);
+    }
+
+    @Override
+    public TextureSource companion(String suffix) {
+        MappedZip.Entry companion = jar.find(entry.name() + suffix);
+        return companion != null ? new JarTextureSource(jar, companion) : null;
+    }
+
+    @Override
+    public String toString() {
+        return id();
+    }
+}
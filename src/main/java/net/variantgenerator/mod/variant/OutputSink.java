@@ -0,0 +1,77 @@
+package net.variantgenerator.mod.variant;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Destination for generated resources
+ *
+ * Entries are named by their resource-pack path, for example
+ * assets/modid/textures/item/netherite_sword.png. Sinks are used from several
+ * worker threads at once and are closed once generation finishes.
+ */
+public interface OutputSink extends Closeable {
+
+    /**
+     * What shareTexture did with an entry
+     */
+    enum Share {
+        /** The entry refers to the written data, no second copy was made */
+        LINKED,
+        /** The data was written again under the entry */
+        COPIED,
+        /** The entry was already present, nothing was added */
+        SKIPPED
+    }
+
+    /**
+     * Serves a texture from the generation cache without generating it
+     * Returns true if the entry was produced from the cache
+     */
+    boolean restoreTexture(String entry, long key) throws IOException;
+
+    /**
+     * Writes a generated texture and stores it in the generation cache
+     */
+    void writeTexture(String entry, long key, byte[] png) throws IOException;
+
+    /**
+     * Writes a texture identical to one already written under another entry
+     */
+    Share shareTexture(String entry, long key, String writtenEntry, byte[] png) throws IOException;
+
+    /**
+     * Writes a small generated file (such as a model) into an entry
+     */
+    void writeFile(String entry, byte[] data) throws IOException;
+
+    /**
+     * Gets the location of an entry, as recorded in the variant registry
+     */
+    String location(String entry);
+
+    /**
+     * Gets the sink for the outputs of the index-th source group of a run
+     * A sink that writes in a fixed order (a pack) collects each group's entries and
+     * writes them after those of every earlier group; others write straight through
+     */
+    default OutputSink group(int index) {
+        return this;
+    }
+
+    /**
+     * Ends a group sink, completing once everything added through it is written
+     * Every group of a run must be ended, whether or not it produced anything
+     */
+    default CompletableFuture<Void> finish() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Marks the run as failed before the sink is closed
+     * A sink that replaces its output whole on close (a pack) keeps the previous one instead
+     */
+    default void discard() {
+    }
+}
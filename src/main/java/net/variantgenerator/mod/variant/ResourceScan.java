@@ -0,0 +1,60 @@
+package net.variantgenerator.mod.variant;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of one traversal of the resource roots
+ *
+ * Holds the source textures accepted by the scan filter, and every other resource
+ * the generator reads (animation .mcmeta files and model JSON), all by
+ * resource-pack entry. When several roots provide the same entry the first root
+ * wins, as in a resource pack stack.
+ */
+public final class ResourceScan {
+    private final List<TextureSource> textures;
+    private final Map<String, TextureSource> textureIndex;
+    private final Map<String, TextureSource> files;
+
+    ResourceScan(Map<String, TextureSource> textures, Map<String, TextureSource> files) {
+        this.textures = List.copyOf(textures.values());
+        this.textureIndex = Collections.unmodifiableMap(textures);
+        this.files = Collections.unmodifiableMap(files);
+    }
+
+    /**
+     * Gets the source textures, in entry order
+     */
+    public List<TextureSource> textures() {
+        return textures;
+    }
+
+    /**
+     * Gets a source texture by entry, or null if no root has it or the filter rejected it
+     */
+    public TextureSource texture(String entry) {
+        return textureIndex.get(entry);
+    }
+
+    /**
+     * Gets a non-texture resource by entry, or null if no root has it
+     */
+    public TextureSource file(String entry) {
+        return files.get(entry);
+    }
+
+    /**
+     * Gets every model JSON found, in entry order
+     */
+    public List<TextureSource> models() {
+        List<TextureSource> models = new ArrayList<>();
+        for (Map.Entry<String, TextureSource> entry : files.entrySet()) {
+            if (TextureSourceScanner.isModelEntry(entry.getKey())) {
+                models.add(entry.getValue());
+            }
+        }
+        return models;
+    }
+}
@@ -0,0 +1,58 @@
+package net.variantgenerator.mod.variant;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A source texture, either a loose file or an entry inside a mod jar
+ */
+public interface TextureSource {
+
+    /**
+     * Gets the resource-pack path of the texture, for example assets/modid/textures/item/iron_sword.png
+     */
+    String entry();
+
+    /**
+     * Gets a unique location for logs and the generation cache manifest
+     */
+    String id();
+
+    /**
+     * Gets the size of the stored texture in bytes
+     */
+    long size();
+
+    /**
+     * Gets a value that changes whenever the content changes:
+     * the modification time of a file, or the CRC of a jar entry
+     */
+    long stamp();
+
+    /**
+     * Reads the texture
+     * The buffer may be a view of a mapped jar or a reused per-thread buffer,
+     * so it must be consumed before the next read on the same thread
+     */
+    ByteBuffer read() throws IOException;
+
+    /**
+     * Reads at most the first length bytes, for example to inspect a PNG header
+     */
+    ByteBuffer readHeader(int length) throws IOException;
+
+    /**
+     * Gets the file stored next to this one with a suffix appended (such as ".mcmeta"), or null
+     */
+    TextureSource companion(String suffix);
+
+    /**
+     * Reads the texture into a new array
+     */
+    default byte[] readAllBytes() throws IOException {
+        ByteBuffer data = read();
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,212 @@
+package net.variantgenerator.mod.variant;
+
+import net.variantgenerator.mod.util.MappedZip;
+import net.variantgenerator.mod.util.ParallelFileWalker;
+import net.variantgenerator.mod.util.WorkerPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+/**
+ * Finds source textures in resource roots: directories holding an assets/ folder and mod jars
+ *
+ * One traversal per root collects everything the generator reads: textures
+ * accepted by the filter, their animation .mcmeta files and model JSON. Excluded
+ * namespaces and every assets/&lt;namespace&gt;/ folder other than textures/ and
+ * models/ are pruned before they are entered. Directory roots are walked with one
+ * task per directory, so namespaces are listed in parallel; jars are
+ * memory-mapped and only their central directory is read, so a scan touches no
+ * texture data and extracts nothing. Roots are scanned in parallel on the worker pool.
+ */
+public final class TextureSourceScanner {
+    private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-Scanner");
+    private static final String ASSETS = "assets/";
+    private static final String TEXTURES = "textures";
+    private static final String MODELS = "models";
+    private static final String ANIMATION_SUFFIX = ".mcmeta";
+
+    private TextureSourceScanner() {
+    }
+
+    /**
+     * What a scan collects
+     *
+     * @param excludedNamespaces namespaces (mod ids) never entered
+     * @param subdirectories     whether to look below assets/&lt;namespace&gt;/textures/&lt;category&gt;/
+     *                           (and the same depth under models/)
+     * @param textureFilter      accepts the texture entries to generate from
+     */
+    public record ScanOptions(Set<String> excludedNamespaces, boolean subdirectories, Predicate<String> textureFilter) {
+    }
+
+    /**
+     * Scans every root for assets/&lt;namespace&gt;/textures/**.png entries accepted by the filter
+     * When several roots provide the same entry, the first root wins, as in a resource pack stack
+     */
+    public static List<TextureSource> scan(List<Path> roots, Predicate<String> entryFilter) {
+        return scan(roots, new ScanOptions(Set.of(), true, entryFilter)).textures();
+    }
+
+    /**
+     * Scans every root once for textures, animation metadata and models
+     */
+    public static ResourceScan scan(List<Path> roots, ScanOptions options) {
+        long start = System.nanoTime();
+        ForkJoinPool pool = WorkerPool.get();
+
+        List<ForkJoinTask<RootScan>> tasks = new ArrayList<>(roots.size());
+        for (Path root : roots) {
+            tasks.add(pool.submit(() -> scanRoot(root, options)));
+        }
+
+        Map<String, TextureSource> textures = new TreeMap<>();
+        Map<String, TextureSource> files = new TreeMap<>();
+        for (ForkJoinTask<RootScan> task : tasks) {
+            RootScan scan = task.join();
+            for (TextureSource source : scan.textures) {
+                textures.putIfAbsent(source.entry(), source);
+            }
+            scan.files.forEach(files::putIfAbsent);
+        }
+
+        LOGGER.info("Scanned {} resource roots in {} ms, found {} textures and {} other resources",
+                roots.size(), (System.nanoTime() - start) / 1_000_000, textures.size(), files.size());
+        return new ResourceScan(textures, files);
+    }
+
+    /**
+     * Everything found in one root
+     */
+    private record RootScan(Collection<TextureSource> textures, Map<String, TextureSource> files) {
+        static final RootScan EMPTY = new RootScan(List.of(), Map.of());
+    }
+
+    private static RootScan scanRoot(Path root, ScanOptions options) {
+        try {
+            if (Files.isDirectory(root)) {
+                return scanDirectory(root, options);
+            }
+            if (Files.isRegularFile(root)) {
+                return scanJar(root, options);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not scan resource root: {}", root, e);
+        }
+        return RootScan.EMPTY;
+    }
+
+    private static RootScan scanDirectory(Path root, ScanOptions options) {
+        Queue<TextureSource> textures = new ConcurrentLinkedQueue<>();
+        Map<String, TextureSource> files = new ConcurrentHashMap<>();
+
+        // Depth 1 is assets/<namespace>, 2 its resource type, 3 the category (item, block, ...)
+        ParallelFileWalker.walk(root.resolve("assets"), (directory, depth) -> switch (depth) {
+            case 1 -> !options.excludedNamespaces().contains(directory.getFileName().toString());
+            case 2 -> isCollectedType(directory.getFileName().toString());
+            default -> options.subdirectories() || depth == 3;
+        }, (file, attributes, depth) -> {
+            String entry = root.relativize(file).toString().replace('\\', '/');
+            switch (classify(entry, options)) {
+                case TEXTURE -> {
+                    textures.add(new FileTextureSource(root, file, attributes, files));
+                    LOGGER.debug("Found texture: {}", file);
+                }
+                case FILE -> files.put(entry, new FileTextureSource(root, file, attributes, files));
+                default -> {
+                }
+            }
+        });
+        return new RootScan(textures, files);
+    }
+
+    private static RootScan scanJar(Path jarPath, ScanOptions options) throws IOException {
+        MappedZip jar = MappedZip.open(jarPath, ASSETS);
+        List<TextureSource> textures = new ArrayList<>();
+        Map<String, TextureSource> files = new HashMap<>();
+        for (MappedZip.Entry entry : jar.entries()) {
+            String name = entry.name();
+            if (!isWalked(name, options)) {
+                continue;
+            }
+            switch (classify(name, options)) {
+                case TEXTURE -> textures.add(new JarTextureSource(jar, entry));
+                case FILE -> files.put(name, new JarTextureSource(jar, entry));
+                default -> {
+                }
+            }
+        }
+        if (!textures.isEmpty()) {
+            LOGGER.debug("Found {} textures in {}", textures.size(), jarPath);
+        }
+        return new RootScan(textures, files);
+    }
+
+    private enum Kind {
+        TEXTURE, FILE, OTHER
+    }
+
+    private static Kind classify(String entry, ScanOptions options) {
+        if (isTextureEntry(entry)) {
+            return options.textureFilter().test(entry) ? Kind.TEXTURE : Kind.OTHER;
+        }
+        if (entry.endsWith(ANIMATION_SUFFIX)) {
+            String texture = entry.substring(0, entry.length() - ANIMATION_SUFFIX.length());
+            return isTextureEntry(texture) && options.textureFilter().test(texture) ? Kind.FILE : Kind.OTHER;
+        }
+        return isModelEntry(entry) ? Kind.FILE : Kind.OTHER;
+    }
+
+    /**
+     * Applies the directory pruning rules to a jar entry, which has no directories to prune
+     */
+    private static boolean isWalked(String entry, ScanOptions options) {
+        int namespaceEnd = entry.indexOf('/', ASSETS.length());
+        if (namespaceEnd < 0 || options.excludedNamespaces().contains(entry.substring(ASSETS.length(), namespaceEnd))) {
+            return false;
+        }
+        int typeEnd = entry.indexOf('/', namespaceEnd + 1);
+        if (typeEnd < 0 || !isCollectedType(entry.substring(namespaceEnd + 1, typeEnd))) {
+            return false;
+        }
+        if (options.subdirectories()) {
+            return true;
+        }
+        int categoryEnd = entry.indexOf('/', typeEnd + 1);
+        return categoryEnd < 0 || entry.indexOf('/', categoryEnd + 1) < 0;
+    }
+
+    private static boolean isCollectedType(String type) {
+        return type.equals(TEXTURES) || type.equals(MODELS);
+    }
+
+    /**
+     * Checks whether a resource path is a PNG under assets/&lt;namespace&gt;/textures/
+     */
+    static boolean isTextureEntry(String entry) {
+        return isResourceEntry(entry, "textures/", ".png");
+    }
+
+    /**
+     * Checks whether a resource path is a JSON model under assets/&lt;namespace&gt;/models/
+     */
+    static boolean isModelEntry(String entry) {
+        return isResourceEntry(entry, "models/", ".json");
+    }
+
+    private static boolean isResourceEntry(String entry, String type, String extension) {
+        if (!entry.startsWith(ASSETS) || !entry.endsWith(extension)) {
+            return false;
+        }
+        int namespaceEnd = entry.indexOf('/', ASSETS.length());
+        return namespaceEnd > ASSETS.length() && entry.startsWith(type, namespaceEnd + 1);
+    }
+}
@@ -1,37 +1,98 @@
 package net.variantgenerator.mod.variant;
 
+import com.google.gson.JsonObject;
+import net.variantgenerator.mod.config.VariantGeneratorConfig;
+import net.variantgenerator.mod.config.VariantGeneratorConfig.PerformanceConfig;
+import net.variantgenerator.mod.config.VariantGeneratorConfig.ScanningConfig;
+import net.variantgenerator.mod.config.VariantGeneratorConfig.TextureConfig;
+import net.variantgenerator.mod.config.VariantGeneratorConfig.TierColors;
 import net.variantgenerator.mod.core.*;
 import net.variantgenerator.mod.core.VariantRegistry;
 import net.variantgenerator.mod.core.VariantRegistry.ItemVariantTier;
 import net.variantgenerator.mod.core.VariantRegistry.VariantConfig;
+import net.variantgenerator.mod.registry.ItemModelBuilder;
+import net.variantgenerator.mod.texture.AnimatedTextureColorizer;
+import net.variantgenerator.mod.texture.AnimatedTextureColorizer.StripInfo;
+import net.variantgenerator.mod.texture.GradientLut;
+import net.variantgenerator.mod.texture.PngDecoder;
+import net.variantgenerator.mod.texture.PngEncoder;
+import net.variantgenerator.mod.texture.SpriteMipmaps;
 import net.variantgenerator.mod.texture.TextureColorizer;
 import net.variantgenerator.mod.texture.TextureColorizer.GrayscaleAnalysis;
 import net.variantgenerator.mod.texture.TextureColorizer.Pixel;
+import net.variantgenerator.mod.texture.TextureHistogram;
+import net.variantgenerator.mod.texture.TextureRaster;
+import net.variantgenerator.mod.texture.TextureScaler;
+import net.variantgenerator.mod.util.BoundedPipeline;
+import net.variantgenerator.mod.util.ContentHash;
+import net.variantgenerator.mod.util.ScanPatternMatcher;
+import net.variantgenerator.mod.variant.ItemModelGraph.ItemModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Main variant generator that scans for items and creates variants
  */
 public class VariantGenerator {
     private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-Core");
+    // Decoded source pixels grouping may keep for generation (64 MB); past it sources are decoded again
+    private static final long RETAINED_PIXELS = 16L * 1024 * 1024;
+    // Resource-pack format of Minecraft 1.21.1, the target version; the client lists other formats as incompatible
+    private static final int PACK_FORMAT = 34;
+    private static final String PACK_METADATA =
+            "{\"pack\":{\"pack_format\":" + PACK_FORMAT + ",\"description\":\"Variant Generator generated textures\"}}";
 
     private final VariantRegistry registry;
     private final TextureColorizer colorizer;
-    private final Map<ItemVariantTier, BufferedImage> referenceTextures = new HashMap<>();
+    private final VariantGeneratorConfig config;
+    private final Map<ItemVariantTier, TextureRaster> referenceTextures = new HashMap<>();
+    private final GenerationCache cache;
+    private final AtomicInteger sharedOutputs = new AtomicInteger();
+    private final AtomicInteger linkedOutputs = new AtomicInteger();
+    private final List<Path> resourceRoots = new CopyOnWriteArrayList<>();
+    private final ScanPatternMatcher scanPatterns;
+    private volatile ResourceScan lastScan;
+
+    /**
+     * Source textures with identical pixels, generated together
+     */
+    private static final class SourceGroup {
+        final long hash;
+        final List<TextureSource> items = new ArrayList<>();
+        TextureRaster raster; // decoded while grouping, if the source had to be read
+        StripInfo strip; // scanned while grouping, for animated sources
+        ByteBuffer png; // animated source loaded for the pixel stage
+
+        SourceGroup(long hash) {
+            this.hash = hash;
+        }
+    }
 
     public VariantGenerator(VariantRegistry registry, TextureColorizer colorizer) {
+        this(registry, colorizer, new VariantGeneratorConfig());
+    }
+
+    public VariantGenerator(VariantRegistry registry, TextureColorizer colorizer, VariantGeneratorConfig config) {
         this.registry = registry;
         this.colorizer = colorizer;
+        this.config = config;
+        this.scanPatterns = ScanPatternMatcher.compile(config.scanningConfig.scanPatterns);
+        this.cache = config.performanceConfig.generationCache
+                ? new GenerationCache(Paths.get(config.performanceConfig.cacheDirectory))
+                : null;
     }
 
     /**
@@ -44,131 +105,670 @@ public class VariantGenerator {
         loadReferenceTextures();
 
         // Scan for items that can be converted
-        Set<String> itemsToProcess = scanForIronVariants();
+        List<TextureSource> itemsToProcess = scanForIronVariants();
 
         if (itemsToProcess.isEmpty()) {
             LOGGER.warn("No iron variants found to process");
+            lastScan = null;
             return;
         }
 
         LOGGER.info("Found {} items to generate variants for", itemsToProcess.size());
 
-        // Generate variants for each found item
-        for (String itemId : itemsToProcess) {
-            try {
-                generateVariantsForItem(itemId);
-            } catch (Exception e) {
-                LOGGER.error("Error generating variants for item: {}", itemId, e);
+        // Schedule the most expensive textures first so no large texture is left for the end
+        List<TextureSource> orderedItems = orderByCost(itemsToProcess);
+
+        if (cache != null) {
+            cache.load();
+        }
+        SpriteMipmaps.clear();
+        sharedOutputs.set(0);
+        linkedOutputs.set(0);
+
+        // Reads and writes overlap pixel work; at most maxInFlightTextures sources are held at once
+        PerformanceConfig performance = config.performanceConfig;
+        BoundedPipeline pipeline = new BoundedPipeline(performance.parallelGeneration, performance.maxInFlightTextures);
+
+        // Group identical sources so each unique texture is colorized once per tier
+        List<SourceGroup> groups = groupSources(orderedItems, pipeline);
+
+        boolean complete = false;
+        try {
+            try (OutputSink sink = openSink()) {
+                try {
+                    for (int i = 0; i < groups.size(); i++) {
+                        SourceGroup group = groups.get(i);
+                        OutputSink groupSink = sink.group(i);
+                        pipeline.submit(start -> generateVariants(group, groupSink, start, pipeline));
+                    }
+                    pipeline.await();
+                } catch (Throwable e) {
+                    // A pack missing the groups after a failure would replace a complete one
+                    sink.discard();
+                    throw e;
+                }
             }
+            complete = true;
+        } finally {
+            // The scan maps every mod jar; holding it past the run would keep them mapped all session
+            lastScan = null;
+            // Outputs written before a failure are recorded, so the next run does not redo them;
+            // only a complete run forgets and prunes what it did not reach
+            if (cache != null) {
+                cache.save(complete);
+                cache.report();
+            }
+        }
+
+        if (groups.size() < orderedItems.size()) {
+            LOGGER.info("Deduplicated {} sources into {} unique textures: {} outputs shared instead of generated ({} hard links)",
+                    orderedItems.size(), groups.size(), sharedOutputs.get(), linkedOutputs.get());
         }
 
         LOGGER.info("Variant generation complete. Total variants: {}", registry.size());
     }
 
+    /**
+     * Resolves the pixel hash of every source and groups sources with identical pixels
+     * Sources unchanged since the last run take their hash from the generation cache
+     * without being read; the others are read and decoded on the I/O stage of the
+     * pipeline. Decoded rasters are kept for generation up to a budget, past which
+     * generation decodes them again, so grouping never holds every texture at once.
+     * Animated sources are only streamed through, never held whole.
+     * Groups keep the cost order of their first source.
+     */
+    private List<SourceGroup> groupSources(List<TextureSource> orderedItems, BoundedPipeline pipeline) throws InterruptedException {
+        long[] hashes = new long[orderedItems.size()];
+        TextureRaster[] rasters = new TextureRaster[orderedItems.size()];
+        StripInfo[] strips = new StripInfo[orderedItems.size()];
+        boolean[] resolved = new boolean[orderedItems.size()];
+        AtomicLong retainedPixels = new AtomicLong();
+
+        for (int i = 0; i < orderedItems.size(); i++) {
+            int index = i;
+            pipeline.submit(start -> start.thenRunAsync(() -> {
+                TextureSource source = orderedItems.get(index);
+                try {
+                    Long cachedHash = cache != null ? cache.cachedSourceHash(source) : null;
+                    if (cachedHash != null) {
+                        hashes[index] = cachedHash;
+                    } else if (isAnimated(source)) {
+                        strips[index] = AnimatedTextureColorizer.scan(source.read());
+                        hashes[index] = strips[index].contentHash;
+                        if (cache != null) {
+                            cache.recordSource(source, hashes[index]);
+                        }
+                    } else {
+                        TextureRaster raster = colorizer.loadRaster(source.read());
+                        hashes[index] = TextureHistogram.contentHash(raster);
+                        long pixels = (long) raster.width * raster.height;
+                        if (retainedPixels.addAndGet(pixels) <= RETAINED_PIXELS) {
+                            rasters[index] = raster;
+                        } else {
+                            retainedPixels.addAndGet(-pixels);
+                        }
+                        if (cache != null) {
+                            cache.recordSource(source, hashes[index]);
+                        }
+                    }
+                    resolved[index] = true;
+                } catch (Exception e) {
+                    LOGGER.error("Error reading source texture: {}", source.id(), e);
+                }
+            }, pipeline.io()));
+        }
+        pipeline.await();
+
+        Map<Long, SourceGroup> groups = new LinkedHashMap<>();
+        for (int i = 0; i < orderedItems.size(); i++) {
+            if (!resolved[i]) {
+                continue;
+            }
+            SourceGroup group = groups.computeIfAbsent(hashes[i], SourceGroup::new);
+            group.items.add(orderedItems.get(i));
+            if (group.raster == null && group.strip == null) {
+                group.raster = rasters[i];
+                group.strip = strips[i];
+            }
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    /**
+     * Chains the stages that generate one group: consult the cache and load the
+     * source (I/O), recolor and encode (CPU), then write (I/O) to the group's sink
+     * A failure in any stage stays isolated to that group. The job completes once
+     * the sink has written the group, so a pack holds no more than the pipeline allows
+     */
+    private CompletableFuture<?> generateVariants(SourceGroup group, OutputSink sink, CompletableFuture<Void> start, BoundedPipeline pipeline) {
+        return start
+                .thenApplyAsync(ignored -> unchecked(() -> prepareGroup(group, sink)), pipeline.io())
+                .thenApplyAsync(job -> {
+                    if (job != null) {
+                        unchecked(() -> recolorGroup(job));
+                    }
+                    return job;
+                }, pipeline.cpu())
+                .thenAcceptAsync(job -> {
+                    if (job != null) {
+                        unchecked(() -> writeGroup(job, sink));
+                    }
+                }, pipeline.io())
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof UncheckedIOException io) {
+                        cause = io.getCause();
+                    }
+                    LOGGER.error("Error generating variants for items: {}", group.items, cause);
+                    return null;
+                })
+                // Ended even after a failure, so later groups of an ordered sink are not held back
+                .thenCompose(ignored -> sink.finish());
+    }
+
+    /**
+     * A pipeline stage that does file I/O
+     */
+    @FunctionalInterface
+    private interface IoStage<T> {
+        T run() throws IOException;
+    }
+
+    private static <T> T unchecked(IoStage<T> stage) {
+        try {
+            return stage.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Orders items by estimated cost, most expensive first
+     */
+    private List<TextureSource> orderByCost(List<TextureSource> items) {
+        Map<TextureSource, Long> costs = new HashMap<>();
+        for (TextureSource item : items) {
+            costs.put(item, estimateCost(item));
+        }
+
+        List<TextureSource> ordered = new ArrayList<>(items);
+        ordered.sort(Comparator.comparingLong((TextureSource item) -> costs.get(item)).reversed()
+                .thenComparing(TextureSource::entry));
+        return ordered;
+    }
+
+    /**
+     * Estimates the cost of an item from its PNG header dimensions
+     * Animated textures (with a .mcmeta) are tall frame strips and are weighted up further
+     */
+    private long estimateCost(TextureSource item) {
+        long cost;
+        try {
+            PngDecoder.Header header = PngDecoder.readHeader(item.readHeader(33));
+            cost = (long) header.width * header.height;
+        } catch (IOException e) {
+            cost = item.size();
+        }
+
+        if (isAnimated(item)) {
+            cost *= 2;
+        }
+        return cost;
+    }
+
     /**
      * Loads reference textures for colorization
      */
     private void loadReferenceTextures() throws IOException {
-        // These would typically come from the Enderite mod
+        // Palettes captured from the ingot sprites in earlier sessions; tiers
+        // without one use the built-in colors in EnderiteColorCache
         LOGGER.info("Loading reference textures for variant tiers");
 
-        // In a real implementation, these would be loaded from the config
-        // For now, we'll document the expected colors
-
-        // Example reference analysis:
-        // Iron: Grayscale from 53-255
-        // Netherite: Dark purplish (approx 50, 50, 70)
-        // Enderite: Dark cyan (approx 4, 14, 12)
+        int loaded = EnderiteColorCache.loadPalettes();
+        LOGGER.debug("Loaded {} captured reference palettes (version {})",
+                loaded, ContentHash.toHex(EnderiteColorCache.getVersion()));
+    }
 
-        LOGGER.debug("Reference textures configuration loaded");
+    /**
+     * Sets the mod files (jars or resource directories) scanned for textures
+     * in addition to the assets/ directory in the working directory
+     */
+    public void setResourceRoots(Collection<Path> roots) {
+        resourceRoots.clear();
+        resourceRoots.addAll(roots);
     }
 
     /**
-     * Scans for iron variants in the asset directories
+     * Scans the working directory and every mod file for iron variant textures
+     * The same traversal collects animation metadata and models, kept as the last scan
+     * until the run ends.
+     * With model discovery the textures are those item models use; otherwise they are
+     * picked by file name
      */
-    private Set<String> scanForIronVariants() {
-        Set<String> items = new HashSet<>();
+    private List<TextureSource> scanForIronVariants() {
         LOGGER.info("Scanning for iron variants...");
 
-        // Scan asset directories for items with "iron" in the name
-        try {
-            Path assetsPath = Paths.get("assets");
-            if (Files.exists(assetsPath)) {
-                try (Stream<Path> paths = Files.walk(assetsPath)) {
-                    paths.filter(path -> path.getFileName().toString().endsWith(".png"))
-                            .filter(path -> path.toString().toLowerCase().contains("iron"))
-                            .forEach(path -> {
-                                String relativePath = assetsPath.relativize(path).toString();
-                                items.add(relativePath);
-                                LOGGER.debug("Found iron variant: {}", relativePath);
-                            });
+        List<Path> roots = new ArrayList<>();
+        roots.add(Paths.get(""));
+        roots.addAll(resourceRoots);
+
+        ScanningConfig scanning = config.scanningConfig;
+        TextureSourceScanner.ScanOptions options = new TextureSourceScanner.ScanOptions(
+                new HashSet<>(Arrays.asList(scanning.excludedMods)),
+                scanning.scanSubdirectories,
+                // Every texture an item model may point to, or those with a scan pattern token in the file name
+                scanning.modelDiscovery ? entry -> true : this::hasPatternName);
+        lastScan = TextureSourceScanner.scan(roots, options);
+        return scanning.modelDiscovery ? discoverItemTextures(lastScan) : lastScan.textures();
+    }
+
+    /**
+     * Gets the layer textures of every item whose name holds a scan pattern token
+     * Namespaces with no such item model (such as loose textures without models)
+     * fall back to item textures picked by file name
+     */
+    private List<TextureSource> discoverItemTextures(ResourceScan scan) {
+        List<ItemModel> items = ItemModelGraph.discover(scan, scanPatterns);
+        List<TextureSource> sources = new ArrayList<>();
+        Set<String> modelNamespaces = new HashSet<>();
+        for (ItemModel item : items) {
+            modelNamespaces.add(item.namespace());
+            boolean primary = true;
+            for (int layer = 0; layer < item.layers().size(); layer++) {
+                TextureSource texture = scan.texture(ItemModelGraph.textureEntry(item.layers().get(layer)));
+                if (texture != null) {
+                    sources.add(new ItemLayerSource(texture, item, layer, primary));
+                    primary = false;
+                } else {
+                    LOGGER.debug("Texture {} of {}:{} not found, kept as it is", item.layers().get(layer), item.namespace(), item.name());
                 }
             }
-        } catch (IOException e) {
-            LOGGER.warn("Could not scan asset directories", e);
         }
+        int modelSources = sources.size();
 
-        return items;
+        for (TextureSource texture : scan.textures()) {
+            String entry = texture.entry();
+            String modId = extractModId(entry);
+            if (!modelNamespaces.contains(modId) && entry.startsWith("assets/" + modId + "/textures/item/") && hasPatternName(entry)) {
+                sources.add(texture);
+            }
+        }
+
+        LOGGER.info("Model discovery: {} item textures from {} item models, {} picked by file name",
+                modelSources, items.size(), sources.size() - modelSources);
+        return sources;
     }
 
     /**
-     * Generates netherite and enderite variants for a specific item
+     * Checks whether the file name of an entry holds a scan pattern token
      */
-    private void generateVariantsForItem(String itemPath) throws IOException {
-        LOGGER.info("Generating variants for: {}", itemPath);
+    private boolean hasPatternName(String entry) {
+        return scanPatterns.matches(entry, entry.lastIndexOf('/') + 1, entry.length());
+    }
 
-        // Extract mod ID and item name from path
-        String[] parts = itemPath.split("[/\\\\]");
-        String modId = extractModId(itemPath);
-        String itemName = extractItemName(itemPath);
+    /**
+     * Outputs of a group still to be generated once the cache has served what it could
+     */
+    private static final class GroupJob {
+        final SourceGroup group;
+        final int targetWidth; // width to normalize to, 0 keeps the source size
+        final List<TargetTier> tiers = new ArrayList<>();
+        final List<GradientLut> palettes = new ArrayList<>();
+        final List<List<TextureSource>> sources = new ArrayList<>();
+        byte[][] encoded;
+        SpriteMipmaps.Chain[] mipmaps; // by tier, null without mip chains
+        byte[][][] encodedMipmaps; // by tier, the levels encoded for the cache, null without one
+
+        GroupJob(SourceGroup group, int targetWidth) {
+            this.group = group;
+            this.targetWidth = targetWidth;
+        }
+    }
 
-        // Load source iron texture
-        File sourceFile = new File(itemPath);
-        if (!sourceFile.exists()) {
-            LOGGER.warn("Source file not found: {}", itemPath);
-            return;
+    /**
+     * First stage of a group: serves outputs from the generation cache where possible
+     * and loads the source for the rest, so the pixel stage never waits on the disk
+     * Returns null when the cache served everything
+     */
+    private GroupJob prepareGroup(SourceGroup group, OutputSink sink) throws IOException {
+        LOGGER.info("Generating variants for: {}", group.items.size() == 1 ? group.items.get(0) : group.items);
+        TextureSource source = group.items.get(0);
+        GroupJob job = new GroupJob(group, getTargetWidth(source));
+        boolean mipmaps = hasMipmaps(source);
+
+        for (TargetTier tier : getTargetTiers()) {
+            GradientLut palette = tier.palette();
+            long key = GenerationCache.key(group.hash, palette, job.targetWidth);
+            // An output is only served from the cache along with its mip chain
+            SpriteMipmaps.Chain chain = mipmaps && cache != null ? cache.loadMipmaps(key) : null;
+            boolean restorable = !mipmaps || chain != null;
+            List<TextureSource> missing = new ArrayList<>();
+            for (TextureSource item : group.items) {
+                String entry = getOutputEntry(item, tier.name());
+                if (restorable && sink.restoreTexture(entry, key)) {
+                    writeCompanionFiles(sink, item, tier.name(), entry);
+                    registerVariant(item, tier, sink.location(entry));
+                    registerMipmaps(entry, chain);
+                } else {
+                    missing.add(item);
+                }
+            }
+            if (!missing.isEmpty()) {
+                job.tiers.add(tier);
+                job.palettes.add(palette);
+                job.sources.add(missing);
+            }
+        }
+
+        if (job.tiers.isEmpty()) {
+            LOGGER.debug("All variants of {} served from the generation cache", group.items);
+            group.raster = null;
+            group.strip = null;
+            return null;
+        }
+
+        if (group.raster == null) {
+            if (group.strip != null || isAnimated(source)) {
+                // A copy: a read may return a per-thread buffer, and the next stage runs on another thread
+                group.png = ByteBuffer.wrap(source.readAllBytes());
+            } else {
+                group.raster = colorizer.loadRaster(source.read());
+            }
+        }
+        return job;
+    }
+
+    /**
+     * Last stage of a group: writes every encoded output and its companion files
+     */
+    private Void writeGroup(GroupJob job, OutputSink sink) throws IOException {
+        for (int i = 0; i < job.tiers.size(); i++) {
+            TargetTier tier = job.tiers.get(i);
+            long key = GenerationCache.key(job.group.hash, job.palettes.get(i), job.targetWidth);
+            List<TextureSource> sources = job.sources.get(i);
+
+            byte[] png = job.encoded[i];
+            SpriteMipmaps.Chain chain = job.mipmaps != null ? job.mipmaps[i] : null;
+            if (chain != null && job.encodedMipmaps != null) {
+                cache.storeMipmaps(key, chain.baseHash(), job.encodedMipmaps[i]);
+            }
+            String written = null;
+            Set<String> entries = new HashSet<>();
+            for (TextureSource source : sources) {
+                String entry = getOutputEntry(source, tier.name());
+                if (!entries.add(entry)) {
+                    continue; // another layer or item using the same texture resolves to the same output
+                }
+                if (written == null) {
+                    sink.writeTexture(entry, key, png);
+                    written = entry;
+                } else {
+                    switch (sink.shareTexture(entry, key, written, png)) {
+                        case LINKED -> {
+                            linkedOutputs.incrementAndGet();
+                            sharedOutputs.incrementAndGet();
+                        }
+                        case COPIED -> sharedOutputs.incrementAndGet();
+                        case SKIPPED -> {
+                        }
+                    }
+                }
+            }
+
+            for (TextureSource source : sources) {
+                String entry = getOutputEntry(source, tier.name());
+                writeCompanionFiles(sink, source, tier.name(), entry);
+                LOGGER.debug("Saved {} texture to: {}", tier.name(), sink.location(entry));
+                registerVariant(source, tier, sink.location(entry));
+                registerMipmaps(entry, chain);
+            }
+        }
+        job.encoded = null;
+        job.mipmaps = null;
+        job.encodedMipmaps = null;
+
+        LOGGER.info("Completed variant generation for: {}", job.group.items);
+        return null;
+    }
+
+    /**
+     * Decides from the source's PNG header the width to normalize a group's outputs to
+     * Returns 0 to keep the source size, always for animated textures, whose frames are kept as they are
+     */
+    private int getTargetWidth(TextureSource source) throws IOException {
+        TextureConfig textures = config.textureConfig;
+        if (!textures.normalizeTextureSize || isAnimated(source)) {
+            return 0;
         }
+        PngDecoder.Header header = PngDecoder.readHeader(source.readHeader(33));
+        return header.width != textures.textureSize ? textures.textureSize : 0;
+    }
 
-        BufferedImage ironTexture = colorizer.loadImage(sourceFile);
+    /**
+     * Recolors a group's source into every pending palette and encodes each result
+     * When mipmaps are generated, each result's mip chain is then built from it, in
+     * one more pass over the result that also hashes it, and encoded for the cache
+     * A source with a target width is normalized to it first, once for all tiers
+     * Animated sources are streamed a batch of frames at a time; the others are
+     * recolored in one pass over the decoded source
+     */
+    private Void recolorGroup(GroupJob job) throws IOException {
+        SourceGroup group = job.group;
+        List<GradientLut> palettes = job.palettes;
+        TextureSource source = group.items.get(0);
+        if (group.png != null) {
+            ByteBuffer png = group.png;
+            group.png = null;
+            StripInfo strip = group.strip != null ? group.strip : AnimatedTextureColorizer.scan(png);
+            group.strip = null;
+            LOGGER.debug("Streaming {} animation frames of {}", strip.frameCount(), source);
+            job.encoded = AnimatedTextureColorizer.recolor(png, strip, palettes, config.performanceConfig.parallelFrames);
+            return null;
+        }
 
-        // Generate netherite variant
-        generateVariantTexture(modId, itemName, ironTexture, ItemVariantTier.NETHERITE, sourceFile);
+        TextureRaster ironTexture = group.raster;
+        group.raster = null;
 
-        // Generate enderite variant
-        generateVariantTexture(modId, itemName, ironTexture, ItemVariantTier.ENDERITE, sourceFile);
+        // Normalized once, before the fan-out, so every tier recolors the scaled source
+        if (job.targetWidth != 0) {
+            ironTexture = TextureScaler.normalize(ironTexture, job.targetWidth);
+        }
+        TextureRaster[] variants = colorizer.recolorAll(ironTexture, palettes);
+        boolean mipmaps = hasMipmaps(source);
+        job.encoded = new byte[variants.length][];
+        job.mipmaps = mipmaps ? new SpriteMipmaps.Chain[variants.length] : null;
+        job.encodedMipmaps = mipmaps && cache != null ? new byte[variants.length][][] : null;
+        for (int i = 0; i < variants.length; i++) {
+            job.encoded[i] = PngEncoder.encode(variants[i]);
+            if (mipmaps) {
+                job.mipmaps[i] = SpriteMipmaps.Chain.build(variants[i]);
+            }
+            if (job.encodedMipmaps != null) {
+                job.encodedMipmaps[i] = GenerationCache.encodeMipmaps(job.mipmaps[i]);
+            }
+        }
+        return null;
+    }
 
-        LOGGER.info("Completed variant generation for: {}", itemName);
+    /**
+     * Checks whether the outputs of a source get a mip chain
+     * Animated textures do not: the game mipmaps their frames as they play
+     */
+    private boolean hasMipmaps(TextureSource source) {
+        return config.textureConfig.generateMipmaps && !isAnimated(source);
     }
 
     /**
-     * Generates a single variant texture
+     * Makes a texture's mip chain available to the atlas under its sprite identifier
      */
-    private void generateVariantTexture(String modId, String itemName, BufferedImage sourceTexture,
-                                       ItemVariantTier tier, File sourceFile) throws IOException {
-        LOGGER.debug("Generating {} variant for {}", tier.displayName, itemName);
+    private static void registerMipmaps(String entry, SpriteMipmaps.Chain chain) {
+        if (chain != null && chain.depth() > 0 && TextureSourceScanner.isTextureEntry(entry)) {
+            SpriteMipmaps.register(ItemModelGraph.textureId(entry), chain);
+        }
+    }
 
-        // Create reference color palette for the tier
-        GrayscaleAnalysis tierColorAnalysis = getReferenceColorForTier(tier);
+    /**
+     * Checks whether a source is an animated texture, i.e. has an animation .mcmeta
+     */
+    private static boolean isAnimated(TextureSource source) {
+        return source.companion(".mcmeta") != null;
+    }
 
-        // Recolor the texture
-        BufferedImage recoloredTexture = colorizer.recolorImage(sourceTexture,
-                tierColorAnalysis.brightestPixel,
-                tierColorAnalysis.darkestPixel);
+    /**
+     * A tier outputs are generated for, named by the token that replaces scan patterns in output names
+     * Tiers from the configuration have no ItemVariantTier: they get textures and
+     * models, but no registered variant
+     */
+    private record TargetTier(String name, ItemVariantTier tier, GradientLut palette) {
+    }
 
-        // Save the recolored texture
-        String outputName = sourceFile.getName()
-                .replace("iron", tier.displayName.toLowerCase());
-        File outputFile = new File(sourceFile.getParent(), outputName);
+    /**
+     * Gets the tiers to generate: every tier except the iron source tier, then the
+     * configured extra tiers, each recolored with its own palette stops
+     */
+    private List<TargetTier> getTargetTiers() {
+        List<TargetTier> tiers = new ArrayList<>();
+        for (ItemVariantTier tier : ItemVariantTier.values()) {
+            if (tier != ItemVariantTier.IRON) {
+                tiers.add(new TargetTier(tier.displayName.toLowerCase(Locale.ROOT), tier, getPaletteForTier(tier)));
+            }
+        }
+        for (TierColors extra : config.textureConfig.extraTiers) {
+            tiers.add(new TargetTier(extra.tierName.toLowerCase(Locale.ROOT), null, extra.gradient()));
+        }
+        return tiers;
+    }
 
-        colorizer.saveImage(recoloredTexture, outputFile);
-        LOGGER.debug("Saved {} texture to: {}", tier.displayName, outputFile.getAbsolutePath());
+    /**
+     * Opens the configured output: loose files under a directory, or a resource-pack zip
+     */
+    private OutputSink openSink() throws IOException {
+        TextureConfig textures = config.textureConfig;
+        if (TextureConfig.OUTPUT_ZIP.equalsIgnoreCase(textures.outputMode)) {
+            ZipPackSink sink = new ZipPackSink(Paths.get(textures.outputPack), cache);
+            sink.writeFile("pack.mcmeta", PACK_METADATA.getBytes(StandardCharsets.UTF_8));
+            LOGGER.info("Writing variants to resource pack: {}", textures.outputPack);
+            return sink;
+        }
+        return new DirectoryOutputSink(Paths.get(textures.outputDirectory), cache);
+    }
 
-        // Register the variant
+    /**
+     * Gets the pack entry of a tier: the source entry with its scan pattern tokens replaced in the file name
+     * For loose sources under ./assets and the default "." output directory the
+     * entry is right next to the source
+     */
+    private String getOutputEntry(TextureSource source, String tierName) {
+        if (source instanceof ItemLayerSource layer) {
+            return getLayerOutputEntry(source.entry(), layer.item(), layer.layer(), tierName);
+        }
+        String sourcePath = source.entry();
+        int nameStart = sourcePath.lastIndexOf('/') + 1;
+        return scanPatterns.replace(sourcePath, nameStart, sourcePath.length(), tierName);
+    }
+
+    /**
+     * Gets the pack entry of a tier for a layer texture of an item
+     * A texture not named after a scan pattern is named after the variant item
+     * instead (with a _layerN suffix past layer 0), next to the source texture
+     */
+    private String getLayerOutputEntry(String textureEntry, ItemModel item, int layer, String tierName) {
+        int nameStart = textureEntry.lastIndexOf('/') + 1;
+        if (scanPatterns.matches(textureEntry, nameStart, textureEntry.length())) {
+            return scanPatterns.replace(textureEntry, nameStart, textureEntry.length(), tierName);
+        }
+        return textureEntry.substring(0, nameStart) + scanPatterns.replace(item.name(), tierName)
+                + (layer > 0 ? "_layer" + layer : "") + ".png";
+    }
+
+    /**
+     * Writes the files that belong with a variant texture: the animation .mcmeta of an
+     * animated source, and an item model for item textures
+     */
+    private void writeCompanionFiles(OutputSink sink, TextureSource source, String tierName, String entry) throws IOException {
+        TextureSource animation = source.companion(".mcmeta");
+        if (animation != null) {
+            sink.writeFile(entry + ".mcmeta", animation.readAllBytes());
+        }
+
+        if (source instanceof ItemLayerSource layer) {
+            if (layer.primary()) {
+                writeItemModel(sink, layer.item(), tierName);
+            }
+            return;
+        }
+
+        // assets/<modid>/textures/item/<name>.png
+        String[] parts = entry.split("/");
+        if (parts.length >= 5 && parts[0].equals("assets") && parts[2].equals("textures") && parts[3].equals("item")) {
+            String modId = parts[1];
+            String texture = entry.substring(("assets/" + modId + "/textures/").length(), entry.length() - ".png".length());
+            String variantName = texture.substring(texture.lastIndexOf('/') + 1);
+            JsonObject model = ItemModelBuilder.createItemModel(variantName, modId + ":" + texture);
+            sink.writeFile(ItemModelBuilder.generateModelPath(modId, variantName), ItemModelBuilder.toBytes(model));
+        }
+    }
+
+    /**
+     * Writes the model of a tier's variant of an item discovered through its model
+     * It keeps the item's parent and points every layer whose texture was found to
+     * the tier's texture; layers outside the scan keep their texture
+     */
+    private void writeItemModel(OutputSink sink, ItemModel item, String tierName) throws IOException {
+        List<String> layers = new ArrayList<>(item.layers().size());
+        for (int layer = 0; layer < item.layers().size(); layer++) {
+            String texture = item.layers().get(layer);
+            String textureEntry = ItemModelGraph.textureEntry(texture);
+            layers.add(lastScan.texture(textureEntry) != null
+                    ? ItemModelGraph.textureId(getLayerOutputEntry(textureEntry, item, layer, tierName))
+                    : texture);
+        }
+        String variantName = scanPatterns.replace(item.name(), tierName);
+        JsonObject model = ItemModelBuilder.createLayeredItemModel(item.parent() != null ? item.parent() : "item/generated", layers);
+        sink.writeFile(ItemModelBuilder.generateModelPath(item.namespace(), variantName), ItemModelBuilder.toBytes(model));
+    }
+
+    /**
+     * Registers a single generated variant texture
+     * An item discovered through its model is registered once, by its primary layer.
+     * Configured extra tiers are texture-only and not registered
+     */
+    private void registerVariant(TextureSource source, TargetTier target, String textureLocation) {
+        ItemVariantTier tier = target.tier();
+        if (tier == null) {
+            return;
+        }
+        if (source instanceof ItemLayerSource layer) {
+            if (layer.primary()) {
+                VariantConfig config = new VariantConfig(layer.item().namespace(), layer.item().name(), tier);
+                config.textureLocation = textureLocation;
+                registry.registerVariant(config);
+            }
+            return;
+        }
+        String modId = extractModId(source.entry());
+        String itemName = extractItemName(source.entry());
         VariantConfig config = new VariantConfig(modId, itemName, tier);
-        config.textureLocation = outputFile.getAbsolutePath();
+        config.textureLocation = textureLocation;
         registry.registerVariant(config);
     }
 
+    /**
+     * Gets the compiled gradient table for a specific tier
+     * Tables are cached by palette content, so every texture of a tier shares one.
+     * A tier whose reference texture was analyzed uses its multi-stop palette
+     */
+    private GradientLut getPaletteForTier(ItemVariantTier tier) {
+        EnderiteColorCache.ColorInfo reference = EnderiteColorCache.getColorInfo(tier.displayName);
+        if (reference.stops != null) {
+            LOGGER.debug("Using {} reference palette with {} stops", tier.displayName, reference.stops.size());
+            return reference.gradient();
+        }
+
+        GrayscaleAnalysis tierColorAnalysis = getReferenceColorForTier(tier);
+        return GradientLut.of(tierColorAnalysis.darkestPixel, tierColorAnalysis.brightestPixel);
+    }
+
     /**
      * Gets reference colors for a specific tier
      * Uses cached colors from Enderite mod when available
@@ -191,12 +791,18 @@ public class VariantGenerator {
                 return new GrayscaleAnalysis(255, 0, enderiteLight, enderiteDark, 255, 0);
 
             case IRON:
-            default:
                 // Iron grayscale
                 Pixel ironLight = EnderiteColorCache.getBrightColor("iron");
                 Pixel ironDark = EnderiteColorCache.getDarkColor("iron");
                 LOGGER.debug("Using Iron colors from cache: {} - {}", ironLight, ironDark);
                 return new GrayscaleAnalysis(255, 0, ironLight, ironDark, 255, 0);
+
+            default:
+                // Any other tier is looked up by name
+                Pixel tierLight = EnderiteColorCache.getBrightColor(tier.displayName);
+                Pixel tierDark = EnderiteColorCache.getDarkColor(tier.displayName);
+                LOGGER.debug("Using {} colors from cache: {} - {}", tier.displayName, tierLight, tierDark);
+                return new GrayscaleAnalysis(255, 0, tierLight, tierDark, 255, 0);
         }
     }
 
@@ -216,8 +822,7 @@ public class VariantGenerator {
      * Extracts item name from a file path
      */
     private String extractItemName(String filePath) {
-        File file = new File(filePath);
-        String name = file.getName();
+        String name = filePath.substring(filePath.lastIndexOf('/') + 1);
         // Remove file extension
         return name.substring(0, name.lastIndexOf('.'));
     }
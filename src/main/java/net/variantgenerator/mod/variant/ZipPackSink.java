@@ -0,0 +1,456 @@
+package net.variantgenerator.mod.variant;
+
+import net.variantgenerator.mod.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streams generated resources into a single resource-pack zip
+ *
+ * Each entry is compressed on the thread that produces it (the generation
+ * workers), then handed to one writer thread that appends it to the pack. The
+ * entries of a source group are collected by its group sink and handed over
+ * together, sorted by name, when the group ends; the writer appends groups in
+ * their run order, holding back a group that ends before an earlier one. A group's
+ * pipeline job only completes once its entries are written, so the pipeline's
+ * in-flight cap bounds what is held here, and the same resources always give a
+ * byte-identical pack whatever order the workers finished in. Entries that do
+ * not shrink when deflated, such as most PNGs, are stored. The archive is
+ * written to a sibling file and moved into place on close, so the previous pack
+ * stays whole until the new one is finished.
+ */
+public class ZipPackSink implements OutputSink {
+    private static final Logger LOGGER = LoggerFactory.getLogger("VariantGenerator-Pack");
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int VERSION = 20;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int DOS_DATE = (1 << 5) | 1; // 1980-01-01, keeps packs reproducible
+    private static final int MAX_ENTRIES = 0xFFFF;
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int UNORDERED = -1; // entries added to the sink itself, written as they arrive
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<CRC32> CRC = ThreadLocal.withInitial(CRC32::new);
+
+    /**
+     * A compressed entry waiting to be written
+     */
+    private record Compressed(int method, int crc, int size, byte[] data, int length) {
+    }
+
+    private record Entry(String name, Compressed data) {
+    }
+
+    /**
+     * Entries handed to the writer together, completing written once they are in the pack
+     */
+    private record Batch(int index, List<Entry> entries, CompletableFuture<Void> written) {
+    }
+
+    private record CentralEntry(byte[] name, int method, int crc, int compressedSize, int size, long offset) {
+    }
+
+    private static final Batch END = new Batch(UNORDERED, List.of(), null);
+
+    private final Path target;
+    private final Path temp;
+    private final GenerationCache cache;
+    private final OutputStream out;
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private volatile IOException failure;
+    private volatile boolean discarded;
+
+    // Writer thread state
+    private final SortedMap<Integer, Batch> heldBack = new TreeMap<>();
+    private final Set<String> names = new HashSet<>();
+    private final List<CentralEntry> central = new ArrayList<>();
+    private int nextGroup;
+    private long offset;
+
+    public ZipPackSink(Path target, GenerationCache cache) throws IOException {
+        this.target = target.toAbsolutePath();
+        this.cache = cache;
+        Files.createDirectories(this.target.getParent());
+        this.temp = Files.createTempFile(this.target.getParent(), this.target.getFileName().toString(), ".tmp");
+        try {
+            this.out = new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        this.writer = Thread.ofPlatform()
+                .name("VariantGenerator-PackWriter")
+                .daemon(true)
+                .start(this::writeLoop);
+    }
+
+    @Override
+    public boolean restoreTexture(String entry, long key) throws IOException {
+        byte[] png = cache != null ? cache.load(key) : null;
+        if (png == null) {
+            return false;
+        }
+        add(entry, png);
+        return true;
+    }
+
+    @Override
+    public void writeTexture(String entry, long key, byte[] png) throws IOException {
+        add(entry, png);
+        if (cache != null) {
+            cache.store(key, png);
+        }
+    }
+
+    @Override
+    public Share shareTexture(String entry, long key, String writtenEntry, byte[] png) throws IOException {
+        add(entry, png);
+        return Share.COPIED;
+    }
+
+    @Override
+    public void writeFile(String entry, byte[] data) throws IOException {
+        add(entry, data);
+    }
+
+    @Override
+    public String location(String entry) {
+        return target + "!/" + entry;
+    }
+
+    @Override
+    public OutputSink group(int index) {
+        return new GroupSink(index);
+    }
+
+    /**
+     * Compresses an entry on the calling thread and queues it for the writer right away
+     * A name that was already written is ignored
+     */
+    public void add(String name, byte[] data) throws IOException {
+        checkFailure();
+        hand(new Batch(UNORDERED, List.of(new Entry(name, compress(data))), new CompletableFuture<>()));
+    }
+
+    /**
+     * Queues a batch for the writer, blocking while the queue is full
+     */
+    private void hand(Batch batch) throws IOException {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing pack entries");
+        }
+        // The writer fails every batch it still holds once it stops; one queued after that is failed here
+        IOException error = failure;
+        if (error != null) {
+            batch.written.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Collects the entries of one source group until the group ends
+     * Used by one pipeline job at a time, stage after stage
+     */
+    private final class GroupSink implements OutputSink {
+        private final int index;
+        private final List<Entry> entries = new ArrayList<>();
+        private final Set<String> added = new HashSet<>();
+        private byte[] lastSource;
+        private Compressed lastCompressed;
+        private CompletableFuture<Void> written;
+
+        GroupSink(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public boolean restoreTexture(String entry, long key) throws IOException {
+            byte[] png = cache != null ? cache.load(key) : null;
+            if (png == null) {
+                return false;
+            }
+            add(entry, png);
+            return true;
+        }
+
+        @Override
+        public void writeTexture(String entry, long key, byte[] png) throws IOException {
+            add(entry, png);
+            if (cache != null) {
+                cache.store(key, png);
+            }
+        }
+
+        @Override
+        public Share shareTexture(String entry, long key, String writtenEntry, byte[] png) throws IOException {
+            return add(entry, png) ? Share.COPIED : Share.SKIPPED;
+        }
+
+        @Override
+        public void writeFile(String entry, byte[] data) throws IOException {
+            add(entry, data);
+        }
+
+        @Override
+        public String location(String entry) {
+            return ZipPackSink.this.location(entry);
+        }
+
+        private boolean add(String name, byte[] data) throws IOException {
+            checkFailure();
+            if (written != null) {
+                throw new IllegalStateException("Pack group " + index + " has ended");
+            }
+            if (!added.add(name)) {
+                LOGGER.debug("Skipping duplicate pack entry: {}", name);
+                return false;
+            }
+            // A texture shared under several names is the same array, compressed once
+            if (data != lastSource) {
+                lastCompressed = compress(data);
+                lastSource = data;
+            }
+            entries.add(new Entry(name, lastCompressed));
+            return true;
+        }
+
+        @Override
+        public CompletableFuture<Void> finish() {
+            if (written != null) {
+                return written;
+            }
+            written = new CompletableFuture<>();
+            lastSource = null;
+            lastCompressed = null;
+            entries.sort(Comparator.comparing(Entry::name));
+            try {
+                hand(new Batch(index, entries, written));
+            } catch (IOException e) {
+                written.completeExceptionally(e);
+            }
+            return written;
+        }
+
+        @Override
+        public void close() {
+            // The pack is closed by the sink the group came from
+        }
+    }
+
+    private static Compressed compress(byte[] data) {
+        CRC32 crc = CRC.get();
+        crc.reset();
+        crc.update(data);
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[data.length + 64];
+        int length = 0;
+        while (!deflater.finished() && length < data.length) {
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+
+        return deflater.finished() && length < data.length
+                ? new Compressed(DEFLATED, (int) crc.getValue(), data.length, buffer, length)
+                : new Compressed(STORED, (int) crc.getValue(), data.length, data, data.length);
+    }
+
+    private void writeLoop() {
+        try {
+            Batch batch;
+            while ((batch = queue.take()) != END) {
+                if (batch.index == UNORDERED) {
+                    writeBatch(batch);
+                    continue;
+                }
+                heldBack.put(batch.index, batch);
+                while (!heldBack.isEmpty() && heldBack.firstKey() == nextGroup) {
+                    writeBatch(heldBack.remove(nextGroup++));
+                }
+            }
+            // Groups that never ended (an interrupted run) leave gaps; the rest is written in order
+            for (Batch held : heldBack.values()) {
+                writeBatch(held);
+            }
+            heldBack.clear();
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Pack writer interrupted");
+        }
+
+        IOException error = failure;
+        if (error != null) {
+            heldBack.values().forEach(held -> held.written.completeExceptionally(error));
+            heldBack.clear();
+            for (Batch queued; (queued = queue.poll()) != null; ) {
+                if (queued.written != null) {
+                    queued.written.completeExceptionally(error);
+                }
+            }
+        }
+    }
+
+    private void writeBatch(Batch batch) throws IOException {
+        try {
+            for (Entry entry : batch.entries) {
+                if (!names.add(entry.name)) {
+                    LOGGER.debug("Skipping duplicate pack entry: {}", entry.name);
+                    continue;
+                }
+                if (names.size() > MAX_ENTRIES) {
+                    throw new IOException("Too many entries for a resource pack zip: " + names.size());
+                }
+                writeEntry(entry);
+            }
+        } catch (IOException e) {
+            batch.written.completeExceptionally(e);
+            throw e;
+        }
+        batch.written.complete(null);
+    }
+
+    private void writeEntry(Entry entry) throws IOException {
+        Compressed data = entry.data;
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        if (offset > 0xFFFFFFFFL - data.length - name.length - 30) {
+            throw new IOException("Resource pack zip exceeds 4 GB");
+        }
+        central.add(new CentralEntry(name, data.method, data.crc, data.length, data.size, offset));
+
+        byte[] header = new byte[30];
+        putInt(header, 0, LOCAL_HEADER);
+        putShort(header, 4, VERSION);
+        putShort(header, 6, FLAG_UTF8);
+        putShort(header, 8, data.method);
+        putShort(header, 10, 0);
+        putShort(header, 12, DOS_DATE);
+        putInt(header, 14, data.crc);
+        putInt(header, 18, data.length);
+        putInt(header, 22, data.size);
+        putShort(header, 26, name.length);
+        putShort(header, 28, 0);
+        out.write(header);
+        out.write(name);
+        out.write(data.data, 0, data.length);
+        offset += header.length + name.length + data.length;
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = offset;
+        for (CentralEntry entry : central) {
+            byte[] header = new byte[46];
+            putInt(header, 0, CENTRAL_HEADER);
+            putShort(header, 4, VERSION);
+            putShort(header, 6, VERSION);
+            putShort(header, 8, FLAG_UTF8);
+            putShort(header, 10, entry.method);
+            putShort(header, 12, 0);
+            putShort(header, 14, DOS_DATE);
+            putInt(header, 16, entry.crc);
+            putInt(header, 20, entry.compressedSize);
+            putInt(header, 24, entry.size);
+            putShort(header, 28, entry.name.length);
+            // extra, comment, disk, internal and external attributes stay zero
+            putInt(header, 42, (int) entry.offset);
+            out.write(header);
+            out.write(entry.name);
+            offset += header.length + entry.name.length;
+        }
+
+        byte[] end = new byte[22];
+        putInt(end, 0, END_OF_CENTRAL_DIRECTORY);
+        putShort(end, 8, central.size());
+        putShort(end, 10, central.size());
+        putInt(end, 12, (int) (offset - start));
+        putInt(end, 16, (int) start);
+        out.write(end);
+    }
+
+    /**
+     * Waits for the writer, finishes the archive and moves it into place
+     * A pack that could not be finished is discarded, leaving the previous one as it was
+     */
+    @Override
+    public void close() throws IOException {
+        boolean finished = false;
+        try {
+            try {
+                while (writer.isAlive() && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                    // The writer is still draining
+                }
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while finishing resource pack");
+            }
+            checkFailure();
+            if (discarded) {
+                LOGGER.warn("Generation failed, keeping the previous resource pack {}", target);
+                return;
+            }
+
+            writeCentralDirectory();
+            out.close();
+            FileUtils.moveReplacing(temp, target);
+            finished = true;
+            LOGGER.info("Wrote {} entries to resource pack {}", central.size(), target);
+        } finally {
+            out.close();
+            if (!finished) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    @Override
+    public void discard() {
+        discarded = true;
+    }
+
+    private void checkFailure() throws IOException {
+        IOException error = failure;
+        if (error != null) {
+            throw new IOException("Resource pack writer failed", error);
+        }
+    }
+
+    private static void putShort(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >>> 8);
+        target[offset + 2] = (byte) (value >>> 16);
+        target[offset + 3] = (byte) (value >>> 24);
+    }
+}
@@ -0,0 +1,47 @@
+package net.variantgenerator.mod.texture;
+
+import net.variantgenerator.mod.texture.TextureColorizer.Pixel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Two-stop palettes must keep the tables, and so the cache keys, of the original two-stop gradient
+ */
+class GradientLutTest {
+
+    @Test
+    void twoStopPalettesMatchTheOriginalGradient() {
+        Random random = new Random(19);
+        for (int pair = 0; pair < 2000; pair++) {
+            Pixel dark = new Pixel(random.nextInt(256), random.nextInt(256), random.nextInt(256), 255);
+            Pixel bright = new Pixel(random.nextInt(256), random.nextInt(256), random.nextInt(256), 255);
+            int[] expected = originalTable(dark, bright);
+
+            GradientLut gradient = GradientLut.of(dark, bright);
+            assertArrayEquals(expected, gradient.table(), "of(dark, bright), pair " + pair);
+            GradientLut stops = GradientLut.of(List.of(dark, bright));
+            assertArrayEquals(expected, stops.table(), "of(List), pair " + pair);
+            assertEquals(gradient.contentHash(), stops.contentHash());
+        }
+    }
+
+    /**
+     * The two-stop table as it was compiled before multi-stop palettes
+     */
+    private static int[] originalTable(Pixel dark, Pixel bright) {
+        int[] table = new int[256];
+        for (int value = 0; value < 256; value++) {
+            float t = value / 255.0f;
+            int r = (int) (dark.r + t * (bright.r - dark.r));
+            int g = (int) (dark.g + t * (bright.g - dark.g));
+            int b = (int) (dark.b + t * (bright.b - dark.b));
+            table[value] = (r << 16) | (g << 8) | b;
+        }
+        return table;
+    }
+}
@@ -0,0 +1,107 @@
+package net.variantgenerator.mod.texture;
+
+import net.variantgenerator.mod.config.VariantGeneratorConfig;
+import net.variantgenerator.mod.config.VariantGeneratorConfig.TierColors;
+import net.variantgenerator.mod.texture.TextureColorizer.Pixel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The vector kernel must match the scalar kernel bit for bit
+ */
+class PixelKernelEquivalenceTest {
+    private static final int[] SIZES = {1, 3, 7, 16 * 16, 17 * 13, 64 * 64 + 5};
+
+    @Test
+    void vectorKernelMatchesScalarKernel() {
+        PixelKernel vector = PixelKernels.vector();
+        assumeTrue(vector != null, "Vector kernels are not available on this JVM");
+        PixelKernel scalar = PixelKernels.scalar();
+
+        Random random = new Random(42);
+        int[][] tables = tierTables(random);
+
+        for (int size : SIZES) {
+            for (int round = 0; round < 20; round++) {
+                int[] src = randomRaster(random, size);
+                int from = size > 2 ? random.nextInt(size / 2) : 0;
+                int to = size - (size > 2 ? random.nextInt(size / 2) : 0);
+
+                for (int[] table : tables) {
+                    int[] expected = src.clone();
+                    int[] actual = src.clone();
+                    assertEquals(scalar.recolor(src, expected, from, to, table), vector.recolor(src, actual, from, to, table));
+                    assertArrayEquals(expected, actual, "recolor, " + size + " pixels");
+
+                    expected = src.clone();
+                    actual = src.clone();
+                    scalar.recolorOpaque(src, expected, from, to, table);
+                    vector.recolorOpaque(src, actual, from, to, table);
+                    assertArrayEquals(expected, actual, "recolorOpaque, " + size + " pixels");
+                }
+
+                int[][] expectedAll = new int[tables.length][size];
+                int[][] actualAll = new int[tables.length][size];
+                assertEquals(scalar.recolorAll(src, expectedAll, from, to, tables), vector.recolorAll(src, actualAll, from, to, tables));
+                for (int t = 0; t < tables.length; t++) {
+                    assertArrayEquals(expectedAll[t], actualAll[t], "recolorAll table " + t + ", " + size + " pixels");
+                }
+
+                int[] curve = new int[256];
+                for (int i = 0; i < curve.length; i++) {
+                    curve[i] = random.nextInt(256);
+                }
+                int[] expected = src.clone();
+                int[] actual = src.clone();
+                scalar.mapChannels(src, expected, from, to, curve);
+                vector.mapChannels(src, actual, from, to, curve);
+                assertArrayEquals(expected, actual, "mapChannels, " + size + " pixels");
+            }
+        }
+    }
+
+    /**
+     * Tables of every built-in tier, plus random multi-stop palettes
+     */
+    private static int[][] tierTables(Random random) {
+        List<int[]> tables = new ArrayList<>();
+        for (TierColors tier : List.of(VariantGeneratorConfig.IRON_COLORS, VariantGeneratorConfig.NETHERITE_COLORS,
+                VariantGeneratorConfig.ENDERITE_COLORS)) {
+            tables.add(tier.gradient().table());
+        }
+        for (int stops = 2; stops <= 8; stops++) {
+            List<Pixel> palette = new ArrayList<>();
+            for (int i = 0; i < stops; i++) {
+                palette.add(new Pixel(random.nextInt(256), random.nextInt(256), random.nextInt(256), 255));
+            }
+            tables.add(GradientLut.of(palette).table());
+        }
+        return tables.toArray(new int[0][]);
+    }
+
+    /**
+     * Mostly grayscale pixels, with colored, transparent and translucent ones mixed in
+     */
+    private static int[] randomRaster(Random random, int size) {
+        int[] pixels = new int[size];
+        for (int i = 0; i < size; i++) {
+            int alpha = switch (random.nextInt(4)) {
+                case 0 -> 0;
+                case 1 -> random.nextInt(256);
+                default -> 255;
+            };
+            int v = random.nextInt(256);
+            pixels[i] = random.nextInt(3) == 0
+                    ? (alpha << 24) | (random.nextInt(1 << 24))
+                    : (alpha << 24) | (v << 16) | (v << 8) | v;
+        }
+        return pixels;
+    }
+}
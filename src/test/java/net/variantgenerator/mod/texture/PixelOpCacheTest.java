@@ -0,0 +1,37 @@
+package net.variantgenerator.mod.texture;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiled operations are cached per parameter set, but only the recently used ones
+ */
+class PixelOpCacheTest {
+
+    @Test
+    void hslCacheKeepsRecentTransformsOnly() {
+        HslTransform.clearCache();
+        HslTransform first = HslTransform.of(0.0f, 1.0f, 0.0f);
+        for (int i = 1; i <= 1000; i++) {
+            HslTransform.of(i * 0.25f, 1.0f, 0.0f);
+            // keep the first transform in use so it is never the eldest
+            assertSame(first, HslTransform.of(0.0f, 1.0f, 0.0f));
+        }
+        assertTrue(HslTransform.getCacheSize() <= 64, "cache grew to " + HslTransform.getCacheSize());
+        HslTransform.clearCache();
+    }
+
+    @Test
+    void curveCacheKeepsRecentCurvesOnly() {
+        ChannelCurve.clearCache();
+        ChannelCurve first = ChannelCurve.gammaBrightness(1.0f, 1.0f);
+        for (int i = 1; i <= 1000; i++) {
+            ChannelCurve.gammaBrightness(1.0f, 1.0f + i * 0.001f);
+            assertSame(first, ChannelCurve.gammaBrightness(1.0f, 1.0f));
+        }
+        assertTrue(ChannelCurve.getCacheSize() <= 256, "cache grew to " + ChannelCurve.getCacheSize());
+        ChannelCurve.clearCache();
+    }
+}
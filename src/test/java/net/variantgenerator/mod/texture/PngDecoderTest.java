@@ -0,0 +1,35 @@
+package net.variantgenerator.mod.texture;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PngDecoderTest {
+
+    @Test
+    void oversizedImageIsRejectedByTheHeader() throws IOException {
+        // 16384 x 16384 RGBA at 16 bits is 2 GiB of image data, past int range
+        assertThrows(IOException.class, () -> PngDecoder.readHeader(header(16384, 16384, 16, 6, 0)));
+        assertThrows(IOException.class, () -> PngDecoder.decode(header(16384, 16384, 16, 6, 0)));
+        assertThrows(IOException.class, () -> PngDecoder.readHeader(header(16384, 16384, 16, 6, 1)));
+
+        PngDecoder.Header header = PngDecoder.readHeader(header(4096, 4096, 16, 6, 0));
+        assertEquals(4096, header.width);
+    }
+
+    /**
+     * Gets the signature and IHDR chunk of a PNG, the CRC left zero
+     */
+    private static ByteBuffer header(int width, int height, int bitDepth, int colorType, int interlace) {
+        ByteBuffer png = ByteBuffer.allocate(33);
+        png.putLong(0x89504E470D0A1A0AL).putInt(13).put("IHDR".getBytes())
+                .putInt(width).putInt(height)
+                .put((byte) bitDepth).put((byte) colorType).put((byte) 0).put((byte) 0).put((byte) interlace)
+                .putInt(0);
+        return png.flip();
+    }
+}
@@ -0,0 +1,241 @@
+package net.variantgenerator.mod.texture;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PngRoundTripTest {
+
+    // Palette sizes covering every indexed bit depth and both sides of the 256-color truecolor cutoff
+    private static final int[] COLOR_COUNTS = {1, 2, 3, 4, 9, 16, 17, 200, 256, 257, 2000};
+
+    @Test
+    void encodedRastersDecodeExactlyHereAndInImageIO() throws IOException {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            int colors = COLOR_COUNTS[round % COLOR_COUNTS.length];
+            boolean translucent = (round / COLOR_COUNTS.length) % 2 == 1;
+            TextureRaster raster = randomRaster(random, 1 + random.nextInt(40), 1 + random.nextInt(40), colors, translucent);
+            String label = raster + " with " + colors + (translucent ? " translucent" : " opaque") + " colors";
+
+            byte[] png = PngEncoder.encode(raster);
+            PngDecoder.Header header = PngDecoder.readHeader(ByteBuffer.wrap(png));
+            assertEquals(expectedColorType(raster), header.colorType, label);
+            if (header.colorType == 3) {
+                assertEquals(expectedDepth(distinctColors(raster)), header.bitDepth, label);
+            }
+
+            assertArrayEquals(raster.pixels, PngDecoder.decode(png).pixels, label);
+            assertArrayEquals(raster.pixels, readWithImageIO(png), label + " read by ImageIO");
+        }
+    }
+
+    @Test
+    void imageIoOutputDecodesLikeImageIoReadsIt() throws IOException {
+        Random random = new Random(11);
+        for (int round = 0; round < 80; round++) {
+            int width = 1 + random.nextInt(37);
+            int height = 1 + random.nextInt(37);
+            boolean interlaced = round % 2 == 1;
+            BufferedImage image = switch ((round / 2) % 5) {
+                case 0 -> indexedImage(random, width, height, 1);
+                case 1 -> indexedImage(random, width, height, 2);
+                case 2 -> indexedImage(random, width, height, 4);
+                case 3 -> indexedImage(random, width, height, 8);
+                default -> truecolorImage(random, width, height, round % 4 < 2);
+            };
+            String label = width + "x" + height + " type " + image.getType() + (interlaced ? " interlaced" : "");
+
+            byte[] png = writeWithImageIO(image, interlaced);
+            assertEquals(interlaced, PngDecoder.readHeader(ByteBuffer.wrap(png)).interlaced, label);
+            assertArrayEquals(readWithImageIO(png), PngDecoder.decode(png).pixels, label);
+        }
+    }
+
+    @Test
+    void grayscaleImagesDecodeToTheirSamples() throws IOException {
+        Random random = new Random(13);
+        for (int type : new int[]{BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY}) {
+            for (boolean interlaced : new boolean[]{false, true}) {
+                BufferedImage image = new BufferedImage(1 + random.nextInt(30), 1 + random.nextInt(30), type);
+                WritableRaster samples = image.getRaster();
+                int max = type == BufferedImage.TYPE_BYTE_GRAY ? 0xFF : 0xFFFF;
+                int[] expected = new int[image.getWidth() * image.getHeight()];
+                for (int y = 0; y < image.getHeight(); y++) {
+                    for (int x = 0; x < image.getWidth(); x++) {
+                        int sample = random.nextInt(max + 1);
+                        samples.setSample(x, y, 0, sample);
+                        // ImageIO converts gray through a linear color space, so compare against the samples
+                        int gray = max == 0xFF ? sample : sample >>> 8;
+                        expected[y * image.getWidth() + x] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+                    }
+                }
+
+                assertArrayEquals(expected, PngDecoder.decode(writeWithImageIO(image, interlaced)).pixels,
+                        "type " + type + (interlaced ? " interlaced" : ""));
+            }
+        }
+    }
+
+    @Test
+    void streamedRowsMatchWholeImageCoding() throws IOException {
+        Random random = new Random(17);
+        for (int round = 0; round < 60; round++) {
+            int colors = COLOR_COUNTS[round % COLOR_COUNTS.length];
+            boolean translucent = round % 3 == 0;
+            // A tall strip, written and read a few rows at a time like animation frames
+            TextureRaster raster = randomRaster(random, 1 + random.nextInt(20), 1 + random.nextInt(120), colors, translucent);
+            String label = raster + " with " + colors + " colors";
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            // Past 256 colors the collector gives up on the palette and the writer goes truecolor
+            PngEncoder.RowWriter writer = PngEncoder.rows(out, raster.width, raster.height, raster.pixels, opaque(raster));
+            for (int row = 0; row < raster.height; ) {
+                int count = Math.min(raster.height - row, 1 + random.nextInt(9));
+                writer.writeRows(raster.pixels, row * raster.width, count);
+                row += count;
+            }
+            writer.finish();
+            byte[] png = out.toByteArray();
+
+            assertArrayEquals(raster.pixels, readRows(png, random), label);
+            assertArrayEquals(raster.pixels, PngDecoder.decode(png).pixels, label);
+            assertArrayEquals(raster.pixels, readWithImageIO(png), label + " read by ImageIO");
+        }
+    }
+
+    @Test
+    void interlacedImagesStreamThroughTheRowReader() throws IOException {
+        Random random = new Random(19);
+        for (int round = 0; round < 20; round++) {
+            BufferedImage image = round % 2 == 0
+                    ? truecolorImage(random, 1 + random.nextInt(30), 1 + random.nextInt(60), false)
+                    : indexedImage(random, 1 + random.nextInt(30), 1 + random.nextInt(60), 4);
+            byte[] png = writeWithImageIO(image, true);
+
+            assertArrayEquals(readWithImageIO(png), readRows(png, random), "type " + image.getType());
+        }
+    }
+
+    /**
+     * Creates a raster drawing its pixels from a random palette of the given size
+     */
+    private static TextureRaster randomRaster(Random random, int width, int height, int colors, boolean translucent) {
+        int[] palette = new int[colors];
+        for (int i = 0; i < colors; i++) {
+            int alpha = translucent ? random.nextInt(256) : 0xFF;
+            palette[i] = (alpha << 24) | random.nextInt(0x1000000);
+        }
+        TextureRaster raster = TextureRaster.create(width, height);
+        for (int i = 0; i < raster.pixelCount(); i++) {
+            // The first pixels use every color once where they fit, so the count is exact
+            raster.pixels[i] = palette[i < colors ? i : random.nextInt(colors)];
+        }
+        return raster;
+    }
+
+    private static BufferedImage indexedImage(Random random, int width, int height, int bits) {
+        int size = 1 << bits;
+        byte[] r = new byte[size], g = new byte[size], b = new byte[size], a = new byte[size];
+        random.nextBytes(r);
+        random.nextBytes(g);
+        random.nextBytes(b);
+        random.nextBytes(a);
+        IndexColorModel model = new IndexColorModel(bits, size, r, g, b, a);
+        BufferedImage image = new BufferedImage(width, height,
+                bits == 8 ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY, model);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.getRaster().setSample(x, y, 0, random.nextInt(size));
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage truecolorImage(Random random, int width, int height, boolean alpha) {
+        BufferedImage image = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Mostly smooth with noise, so every filter type gets picked somewhere
+                int base = (x * 7 + y * 3) & 0xFF;
+                int argb = (alpha ? random.nextInt(256) : 0xFF) << 24
+                        | base << 16 | ((base + random.nextInt(4)) & 0xFF) << 8 | random.nextInt(256);
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+
+    private static int[] readRows(byte[] png, Random random) throws IOException {
+        try (PngDecoder.RowReader reader = PngDecoder.rows(ByteBuffer.wrap(png))) {
+            int width = reader.header.width;
+            int[] pixels = new int[width * reader.header.height];
+            int row = 0;
+            while (reader.remainingRows() > 0) {
+                int count = Math.min(reader.remainingRows(), 1 + random.nextInt(9));
+                reader.readRows(pixels, row * width, count);
+                row += count;
+            }
+            return pixels;
+        }
+    }
+
+    private static int[] readWithImageIO(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static byte[] writeWithImageIO(BufferedImage image, boolean interlaced) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setProgressiveMode(interlaced ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static int expectedColorType(TextureRaster raster) {
+        if (distinctColors(raster) <= 256) {
+            return 3;
+        }
+        return opaque(raster) ? 2 : 6;
+    }
+
+    private static int expectedDepth(int colors) {
+        return colors <= 2 ? 1 : colors <= 4 ? 2 : colors <= 16 ? 4 : 8;
+    }
+
+    private static int distinctColors(TextureRaster raster) {
+        return (int) Arrays.stream(raster.pixels).distinct().count();
+    }
+
+    private static boolean opaque(TextureRaster raster) {
+        for (int argb : raster.pixels) {
+            if ((argb >>> 24) != 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,29 @@
+package net.variantgenerator.mod.texture;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Histogram bins count opaque pixels only, by luminance and by channel value
+ */
+class TextureHistogramTest {
+
+    @Test
+    void binsCountOpaquePixels() {
+        TextureRaster raster = TextureRaster.create(4, 1);
+        raster.setPixel(0, 0, 0xFF306090);
+        raster.setPixel(1, 0, 0xFF306090);
+        raster.setPixel(2, 0, 0xFF808080);
+        raster.setPixel(3, 0, 0x00306090);
+
+        TextureHistogram histogram = TextureHistogram.analyze(raster);
+
+        assertEquals(3, histogram.opaquePixels());
+        assertEquals(2, histogram.luminanceCount((0x30 + 0x60 + 0x90) / 3));
+        assertEquals(1, histogram.grayscaleLuminanceCount(0x80));
+        assertEquals(2, histogram.redCount(0x30));
+        assertEquals(3, histogram.greenCount(0x60) + histogram.greenCount(0x80));
+        assertEquals(2, histogram.blueCount(0x90));
+    }
+}
@@ -0,0 +1,64 @@
+package net.variantgenerator.mod.texture;
+
+import net.variantgenerator.mod.texture.TextureColorizer.Pixel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A compiled recipe must produce what the same operations produce applied one at a time
+ */
+class TextureRecipeTest {
+
+    @Test
+    void fusedPlanMatchesChainedOperations() {
+        Random random = new Random(7);
+        GradientLut netherite = GradientLut.of(new Pixel(49, 41, 42, 255), new Pixel(111, 98, 101, 255));
+        GradientLut enderite = GradientLut.of(List.of(new Pixel(20, 40, 60, 255), new Pixel(90, 170, 200, 255), new Pixel(200, 240, 255, 255)));
+
+        for (int round = 0; round < 20; round++) {
+            int width = 1 + random.nextInt(70);
+            int height = 1 + random.nextInt(70);
+            TextureRaster source = randomRaster(random, width, height);
+            float hueShift = random.nextFloat() * 360 - 180;
+            float saturation = random.nextFloat() * 2;
+            float lightness = random.nextFloat() - 0.5f;
+            float brightness = 0.5f + random.nextFloat();
+            float gamma = 0.5f + random.nextFloat() * 1.5f;
+
+            TextureRecipe recipe = new TextureRecipe();
+            TextureRecipe.Step base = recipe.source().hsl(hueShift, saturation, lightness).brightness(brightness, gamma);
+            TextureRecipe.Plan plan = recipe.compile(List.of(base.recolor(netherite), base.generateMissingColors(enderite)));
+            assertEquals(3, plan.passCount(), "the shared steps run once, each output once more");
+            TextureRaster[] fused = plan.run(source);
+
+            TextureRaster chained = AdvancedTextureProcessor.adjustBrightness(
+                    AdvancedTextureProcessor.transformHSL(source, hueShift, saturation, lightness), brightness, gamma);
+            TextureRaster recolored = chained.createCompatible();
+            PixelKernels.get().recolor(chained.pixels, recolored.pixels, 0, chained.pixelCount(), netherite.table());
+
+            assertArrayEquals(recolored.pixels, fused[0].pixels, "recolor, round " + round);
+            assertArrayEquals(AdvancedTextureProcessor.generateMissingColors(chained, enderite).pixels, fused[1].pixels,
+                    "generateMissingColors, round " + round);
+        }
+    }
+
+    private static TextureRaster randomRaster(Random random, int width, int height) {
+        TextureRaster raster = TextureRaster.create(width, height);
+        for (int i = 0; i < raster.pixels.length; i++) {
+            int alpha = switch (random.nextInt(4)) {
+                case 0 -> 0;
+                case 1 -> random.nextInt(256);
+                default -> 255;
+            };
+            // Half the pixels gray, so the palettes have something to map
+            int rgb = random.nextBoolean() ? random.nextInt(256) * 0x010101 : random.nextInt(0x1000000);
+            raster.pixels[i] = alpha << 24 | rgb;
+        }
+        return raster;
+    }
+}
@@ -0,0 +1,36 @@
+package net.variantgenerator.mod.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileUtilsTest {
+
+    @Test
+    void linkOrCopyReplacesTargetsAndKeepsTheSourceFile(@TempDir Path directory) throws IOException {
+        Path source = directory.resolve("source.png");
+        Path target = directory.resolve("target.png");
+        Files.write(source, new byte[]{1, 2, 3});
+        Files.write(target, new byte[]{9});
+
+        FileUtils.linkOrCopy(source, target);
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(target));
+
+        // Linking a file to itself, or to a link of itself, leaves it in place
+        assertTrue(FileUtils.linkOrCopy(source, source));
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(source));
+        FileUtils.linkOrCopy(target, source);
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(source));
+
+        try (var files = Files.list(directory)) {
+            assertEquals(2, files.count(), "no temporary files left behind");
+        }
+    }
+}
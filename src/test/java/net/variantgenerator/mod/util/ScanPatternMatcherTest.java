@@ -0,0 +1,90 @@
+package net.variantgenerator.mod.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScanPatternMatcherTest {
+
+    @Test
+    void patternsMatchOnlyAsWholeTokens() {
+        ScanPatternMatcher matcher = ScanPatternMatcher.compile("iron");
+
+        assertTrue(matcher.matches("iron_sword"));
+        assertTrue(matcher.matches("raw_iron"));
+        assertTrue(matcher.matches("iron"));
+        assertTrue(matcher.matches("item/iron_sword.png"));
+        assertTrue(matcher.matches("minecraft:iron_sword"));
+
+        assertFalse(matcher.matches("environment_block"));
+        assertFalse(matcher.matches("ironwood"));
+        assertFalse(matcher.matches("irony"));
+        assertFalse(matcher.matches("andiron_stand"));
+    }
+
+    @Test
+    void matchingIsCaseInsensitive() {
+        ScanPatternMatcher matcher = ScanPatternMatcher.compile("Iron");
+
+        assertTrue(matcher.matches("IRON_SWORD"));
+        assertTrue(matcher.matches("Raw_Iron.png"));
+        assertFalse(matcher.matches("IRONWOOD"));
+    }
+
+    @Test
+    void rangeEndsCountAsTokenBoundaries() {
+        ScanPatternMatcher matcher = ScanPatternMatcher.compile("iron");
+        String entry = "assets/mod/textures/item/xiron_sword.png";
+
+        // Only the file name is looked at: "xiron" is not a token, but "iron" alone is once the range starts there
+        int nameStart = entry.lastIndexOf('/') + 1;
+        assertFalse(matcher.matches(entry, nameStart, entry.length()));
+        assertTrue(matcher.matches(entry, nameStart + 1, entry.length()));
+    }
+
+    @Test
+    void delimitersInAPatternMustAppearLiterally() {
+        ScanPatternMatcher matcher = ScanPatternMatcher.compile("iron_");
+
+        assertTrue(matcher.matches("iron_sword"));
+        assertTrue(matcher.matches("raw_iron_block"));
+        assertFalse(matcher.matches("raw_iron"));
+        assertFalse(matcher.matches("raw_iron.png"));
+    }
+
+    @Test
+    void overlappingPatternsReplaceEachTokenOnce() {
+        ScanPatternMatcher matcher = ScanPatternMatcher.compile("iron_", "iron");
+
+        assertTrue(matcher.matches("iron_sword"));
+        assertTrue(matcher.matches("raw_iron"));
+        assertEquals("netherite_sword", matcher.replace("iron_sword", "netherite"));
+        assertEquals("raw_netherite", matcher.replace("raw_iron", "netherite"));
+        assertEquals("netherite_ingot_netherite", matcher.replace("iron_ingot_iron", "netherite"));
+    }
+
+    @Test
+    void replaceKeepsDelimitersAndTheRestOfTheText() {
+        ScanPatternMatcher matcher = ScanPatternMatcher.compile("iron");
+
+        assertEquals("item/enderite_sword.png", matcher.replace("item/iron_sword.png", "enderite"));
+        assertEquals("environment_block", matcher.replace("environment_block", "enderite"));
+        assertEquals("ENDERITE_Sword", matcher.replace("IRON_Sword", "ENDERITE"));
+
+        // Only the file name is replaced, even where the directory holds the token too
+        String entry = "assets/iron/textures/item/iron_sword.png";
+        int nameStart = entry.lastIndexOf('/') + 1;
+        assertEquals("assets/iron/textures/item/netherite_sword.png",
+                matcher.replace(entry, nameStart, entry.length(), "netherite"));
+    }
+
+    @Test
+    void patternsWithoutATokenAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ScanPatternMatcher.compile("_"));
+        assertThrows(IllegalArgumentException.class, () -> ScanPatternMatcher.compile());
+        assertThrows(IllegalArgumentException.class, () -> ScanPatternMatcher.compile("eisen\u00e9"));
+    }
+}
@@ -0,0 +1,177 @@
+package net.variantgenerator.mod.variant;
+
+import net.variantgenerator.mod.texture.SpriteMipmaps;
+import net.variantgenerator.mod.texture.TextureHistogram;
+import net.variantgenerator.mod.texture.TextureRaster;
+import net.variantgenerator.mod.texture.TextureScaler;
+import net.variantgenerator.mod.util.ContentHash;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenerationCacheTest {
+
+    @Test
+    void saveKeepsOnlyObjectsInUse(@TempDir Path directory) throws IOException {
+        Path cacheDirectory = directory.resolve("cache");
+        Path output = directory.resolve("iron_sword.png");
+
+        GenerationCache first = new GenerationCache(cacheDirectory);
+        first.load();
+        first.write(1, new byte[]{1}, output);
+        first.store(2, new byte[]{2});
+        first.save(true);
+        assertTrue(Files.exists(object(cacheDirectory, 1)));
+        assertTrue(Files.exists(object(cacheDirectory, 2)));
+
+        // The next run writes the output again and stores another texture, but no longer uses key 2
+        GenerationCache second = new GenerationCache(cacheDirectory);
+        second.load();
+        assertTrue(second.restore(1, output));
+        second.store(3, new byte[]{3});
+        second.save(true);
+
+        assertTrue(Files.exists(object(cacheDirectory, 1)), "referenced by a recorded output");
+        assertFalse(Files.exists(object(cacheDirectory, 2)), "unreferenced and unused");
+        assertTrue(Files.exists(object(cacheDirectory, 3)), "stored by this run");
+    }
+
+    @Test
+    void saveForgetsOutputsTheRunDidNotSee(@TempDir Path directory) throws IOException {
+        Path cacheDirectory = directory.resolve("cache");
+        Path kept = directory.resolve("netherite_sword.png");
+        Path deleted = directory.resolve("netherite_axe.png");
+        Path moved = directory.resolve("netherite_hoe.png");
+
+        GenerationCache first = new GenerationCache(cacheDirectory);
+        first.load();
+        first.write(1, new byte[]{1}, kept);
+        first.write(2, new byte[]{2}, deleted);
+        first.write(3, new byte[]{3}, moved);
+        first.save(true);
+
+        // The next run keeps one output, restores the deleted one elsewhere and no longer produces the third
+        Files.delete(deleted);
+        GenerationCache second = new GenerationCache(cacheDirectory);
+        second.load();
+        assertTrue(second.restore(1, kept));
+        second.restore(2, directory.resolve("missing/netherite_axe.png"));
+        second.store(4, new byte[]{4});
+        second.save(true);
+
+        assertTrue(Files.exists(object(cacheDirectory, 1)));
+        assertTrue(Files.exists(object(cacheDirectory, 2)), "used by this run");
+        assertFalse(Files.exists(object(cacheDirectory, 3)), "its output was not seen");
+        String manifest = Files.readString(cacheDirectory.resolve("manifest.json"));
+        assertTrue(manifest.contains(kept.toString().replace("\\", "\\\\")));
+        assertFalse(manifest.contains(moved.getFileName().toString()));
+    }
+
+    @Test
+    void failedRunKeepsWhatItDidNotReach(@TempDir Path directory) throws IOException {
+        Path cacheDirectory = directory.resolve("cache");
+        Path reached = directory.resolve("netherite_sword.png");
+        Path unreached = directory.resolve("netherite_axe.png");
+
+        GenerationCache first = new GenerationCache(cacheDirectory);
+        first.load();
+        first.write(1, new byte[]{1}, reached);
+        first.write(2, new byte[]{2}, unreached);
+        first.save(true);
+
+        // The next run fails after restoring one output and writing another
+        Path written = directory.resolve("netherite_hoe.png");
+        GenerationCache second = new GenerationCache(cacheDirectory);
+        second.load();
+        assertTrue(second.restore(1, reached));
+        second.write(3, new byte[]{3}, written);
+        second.save(false);
+
+        assertTrue(Files.exists(object(cacheDirectory, 2)), "its group was never reached");
+        assertTrue(Files.exists(object(cacheDirectory, 3)));
+        String manifest = Files.readString(cacheDirectory.resolve("manifest.json"));
+        assertTrue(manifest.contains(unreached.getFileName().toString()));
+        assertTrue(manifest.contains(written.getFileName().toString()));
+
+        // The run after that finds the unreached output still up to date
+        GenerationCache third = new GenerationCache(cacheDirectory);
+        third.load();
+        assertTrue(third.restore(2, unreached));
+        assertTrue(third.restore(3, written));
+        assertEquals(2, third.getHits());
+    }
+
+    @Test
+    void outputsEditedInPlaceLeaveTheStoredObjectAlone(@TempDir Path directory) throws IOException {
+        Path cacheDirectory = directory.resolve("cache");
+        Path output = directory.resolve("netherite_sword.png");
+
+        GenerationCache first = new GenerationCache(cacheDirectory);
+        first.load();
+        first.write(1, new byte[]{1, 2, 3}, output);
+        first.save(true);
+
+        // Written through, as an image editor saving over the file would
+        Files.write(output, new byte[]{9, 9});
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(object(cacheDirectory, 1)));
+
+        Path copy = directory.resolve("netherite_axe.png");
+        GenerationCache second = new GenerationCache(cacheDirectory);
+        second.load();
+        assertTrue(second.restore(1, copy));
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(copy));
+    }
+
+    @Test
+    void mipChainsAreKeptWhileTheirTextureIsUsed(@TempDir Path directory) throws IOException {
+        Path cacheDirectory = directory.resolve("cache");
+        TextureRaster texture = TextureRaster.create(16, 8);
+        for (int i = 0; i < texture.pixels.length; i++) {
+            texture.pixels[i] = 0xFF000000 | i * 0x010203;
+        }
+        SpriteMipmaps.Chain chain = SpriteMipmaps.Chain.build(texture);
+        assertEquals(3, chain.depth(), "halved while the height divides exactly: 8x4, 4x2, 2x1");
+        assertEquals(2, chain.level(3).width);
+        assertEquals(TextureHistogram.contentHash(texture), chain.baseHash(), "hashed while filtered");
+        assertArrayEquals(TextureScaler.downsample(texture, 2).pixels, chain.level(1).pixels);
+
+        GenerationCache first = new GenerationCache(cacheDirectory);
+        first.load();
+        first.store(1, new byte[]{1});
+        first.storeMipmaps(1, chain.baseHash(), GenerationCache.encodeMipmaps(chain));
+        first.save(true);
+
+        GenerationCache second = new GenerationCache(cacheDirectory);
+        second.load();
+        SpriteMipmaps.Chain loaded = second.loadMipmaps(1);
+        assertEquals(chain.baseHash(), loaded.baseHash());
+        for (int level = 1; level <= chain.depth(); level++) {
+            assertArrayEquals(chain.level(level).pixels, loaded.level(level).pixels);
+        }
+        assertNull(second.loadMipmaps(2), "never stored");
+        second.save(true);
+
+        // A run that does not use the texture's chain drops it
+        GenerationCache third = new GenerationCache(cacheDirectory);
+        third.load();
+        third.save(true);
+        assertFalse(Files.exists(object(cacheDirectory, GenerationCache.mipKey(1, 1))));
+        GenerationCache fourth = new GenerationCache(cacheDirectory);
+        fourth.load();
+        assertNull(fourth.loadMipmaps(1));
+    }
+
+    private static Path object(Path cacheDirectory, long key) {
+        String hash = ContentHash.toHex(key);
+        return cacheDirectory.resolve("objects").resolve(hash.substring(0, 2)).resolve(hash + ".png");
+    }
+}
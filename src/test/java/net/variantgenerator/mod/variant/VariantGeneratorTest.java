@@ -0,0 +1,101 @@
+package net.variantgenerator.mod.variant;
+
+import net.variantgenerator.mod.config.VariantGeneratorConfig;
+import net.variantgenerator.mod.config.VariantGeneratorConfig.TextureConfig;
+import net.variantgenerator.mod.config.VariantGeneratorConfig.TierColors;
+import net.variantgenerator.mod.core.VariantRegistry;
+import net.variantgenerator.mod.texture.PngEncoder;
+import net.variantgenerator.mod.texture.SpriteMipmaps;
+import net.variantgenerator.mod.texture.TextureColorizer;
+import net.variantgenerator.mod.texture.TextureColorizer.Pixel;
+import net.variantgenerator.mod.texture.TextureRaster;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VariantGeneratorTest {
+
+    @Test
+    void layersSharingATextureWriteItOnce(@TempDir Path directory) throws Exception {
+        Path root = directory.resolve("mod");
+        Path textures = Files.createDirectories(root.resolve("assets/testmod/textures/item"));
+        Path models = Files.createDirectories(root.resolve("assets/testmod/models/item"));
+        TextureRaster raster = TextureRaster.create(16, 16);
+        for (int i = 0; i < raster.pixels.length; i++) {
+            raster.pixels[i] = 0xFF000000 | (i % 256) * 0x010101;
+        }
+        Files.write(textures.resolve("iron_blade.png"), PngEncoder.encode(raster));
+        Files.writeString(models.resolve("iron_blade.json"),
+                "{\"parent\":\"item/handheld\",\"textures\":{\"layer0\":\"testmod:item/iron_blade\",\"layer1\":\"testmod:item/iron_blade\"}}",
+                StandardCharsets.UTF_8);
+
+        for (String mode : List.of(TextureConfig.OUTPUT_DIRECTORY, TextureConfig.OUTPUT_ZIP)) {
+            VariantGeneratorConfig config = new VariantGeneratorConfig();
+            config.performanceConfig.generationCache = false;
+            config.textureConfig.outputMode = mode;
+            config.textureConfig.outputDirectory = directory.resolve("out").toString();
+            config.textureConfig.outputPack = directory.resolve("pack.zip").toString();
+
+            VariantRegistry registry = new VariantRegistry();
+            VariantGenerator generator = new VariantGenerator(registry, new TextureColorizer(), config);
+            generator.setResourceRoots(List.of(root));
+            generator.scanAndGenerateVariants();
+
+            assertEquals(2, registry.size(), mode + ": one variant item per tier");
+            assertEquals(SpriteMipmaps.MAX_LEVELS, SpriteMipmaps.get("testmod:item/netherite_blade").depth(),
+                    mode + ": the atlas gets the generated mip chain");
+            if (mode.equals(TextureConfig.OUTPUT_ZIP)) {
+                try (ZipFile pack = new ZipFile(directory.resolve("pack.zip").toFile())) {
+                    assertNotNull(pack.getEntry("assets/testmod/textures/item/netherite_blade.png"));
+                    assertNotNull(pack.getEntry("assets/testmod/textures/item/enderite_blade.png"));
+                }
+            } else {
+                Path out = directory.resolve("out/assets/testmod/textures/item");
+                assertTrue(Files.size(out.resolve("netherite_blade.png")) > 0);
+                assertTrue(Files.size(out.resolve("enderite_blade.png")) > 0);
+            }
+        }
+    }
+
+    @Test
+    void configuredTiersFanOutWithTheBuiltInOnes(@TempDir Path directory) throws Exception {
+        Path root = directory.resolve("mod");
+        Path textures = Files.createDirectories(root.resolve("assets/testmod/textures/item"));
+        TextureRaster raster = TextureRaster.create(16, 16);
+        for (int i = 0; i < raster.pixels.length; i++) {
+            raster.pixels[i] = 0xFF000000 | (i % 256) * 0x010101;
+        }
+        Files.write(textures.resolve("iron_pick.png"), PngEncoder.encode(raster));
+
+        VariantGeneratorConfig config = new VariantGeneratorConfig();
+        config.performanceConfig.generationCache = false;
+        config.scanningConfig.modelDiscovery = false;
+        config.textureConfig.outputDirectory = directory.resolve("out").toString();
+        config.textureConfig.extraTiers = new TierColors[]{
+                new TierColors("Copper", List.of(new Pixel(60, 20, 10, 255), new Pixel(180, 90, 50, 255), new Pixel(250, 190, 150, 255)))
+        };
+        config.validate();
+
+        VariantRegistry registry = new VariantRegistry();
+        VariantGenerator generator = new VariantGenerator(registry, new TextureColorizer(), config);
+        generator.setResourceRoots(List.of(root));
+        generator.scanAndGenerateVariants();
+
+        Path out = directory.resolve("out/assets/testmod");
+        byte[] copper = Files.readAllBytes(out.resolve("textures/item/copper_pick.png"));
+        assertFalse(Arrays.equals(copper, Files.readAllBytes(out.resolve("textures/item/netherite_pick.png"))));
+        assertTrue(Files.exists(out.resolve("models/item/copper_pick.json")));
+        assertEquals(2, registry.size(), "configured tiers are texture-only");
+    }
+}
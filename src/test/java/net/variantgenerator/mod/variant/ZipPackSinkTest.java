@@ -0,0 +1,97 @@
+package net.variantgenerator.mod.variant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ZipPackSinkTest {
+    private static final List<List<String>> GROUPS = List.of(
+            List.of("assets/a/textures/item/netherite_sword.png", "assets/a/models/item/netherite_sword.json"),
+            List.of("assets/b/textures/item/enderite_axe.png", "assets/a/textures/item/enderite_sword.png"),
+            List.of("assets/c/textures/item/netherite_hoe.png"));
+
+    @Test
+    void packBytesDoNotDependOnCompletionOrder(@TempDir Path directory) throws IOException {
+        Path first = directory.resolve("first.zip");
+        try (ZipPackSink sink = new ZipPackSink(first, null)) {
+            sink.writeFile("pack.mcmeta", new byte[]{'{', '}'});
+            for (int i = 0; i < GROUPS.size(); i++) {
+                writeGroup(sink, i, false).join();
+            }
+        }
+
+        // Groups ending last to first, and their entries added in reverse
+        Path second = directory.resolve("second.zip");
+        try (ZipPackSink sink = new ZipPackSink(second, null)) {
+            sink.writeFile("pack.mcmeta", new byte[]{'{', '}'});
+            CompletableFuture<?>[] written = new CompletableFuture<?>[GROUPS.size()];
+            for (int i = GROUPS.size() - 1; i >= 0; i--) {
+                written[i] = writeGroup(sink, i, true);
+                if (i > 0) {
+                    assertFalse(written[i].isDone(), "a group is held back until every earlier one is written");
+                }
+            }
+            CompletableFuture.allOf(written).join();
+        }
+
+        assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+        try (ZipFile pack = new ZipFile(first.toFile())) {
+            assertEquals(6, pack.size());
+        }
+    }
+
+    @Test
+    void sharingAnEntryTwiceAddsItOnce(@TempDir Path directory) throws IOException {
+        byte[] png = {1, 2, 3};
+        try (ZipPackSink sink = new ZipPackSink(directory.resolve("pack.zip"), null)) {
+            OutputSink group = sink.group(0);
+            group.writeTexture("assets/a/textures/item/netherite_sword.png", 1, png);
+            assertEquals(OutputSink.Share.COPIED, group.shareTexture("assets/b/textures/item/netherite_sword.png", 1,
+                    "assets/a/textures/item/netherite_sword.png", png));
+            assertEquals(OutputSink.Share.SKIPPED, group.shareTexture("assets/b/textures/item/netherite_sword.png", 1,
+                    "assets/a/textures/item/netherite_sword.png", png));
+            group.finish().join();
+        }
+    }
+
+    @Test
+    void failedRunKeepsThePreviousPack(@TempDir Path directory) throws IOException {
+        Path pack = directory.resolve("pack.zip");
+        try (ZipPackSink sink = new ZipPackSink(pack, null)) {
+            writeGroup(sink, 0, false).join();
+        }
+        byte[] previous = Files.readAllBytes(pack);
+
+        try (ZipPackSink sink = new ZipPackSink(pack, null)) {
+            writeGroup(sink, 0, false).join();
+            // The run fails before group 1 ends; group 2 is held back behind it
+            writeGroup(sink, 2, false);
+            assertArrayEquals(previous, Files.readAllBytes(pack), "untouched while the new pack is written");
+            sink.discard();
+        }
+
+        assertArrayEquals(previous, Files.readAllBytes(pack));
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(pack), files.toList(), "no temporary file left behind");
+        }
+    }
+
+    private static CompletableFuture<Void> writeGroup(ZipPackSink sink, int index, boolean reversed) throws IOException {
+        OutputSink group = sink.group(index);
+        List<String> entries = reversed ? GROUPS.get(index).reversed() : GROUPS.get(index);
+        for (String entry : entries) {
+            group.writeFile(entry, entry.repeat(20).getBytes());
+        }
+        return group.finish();
+    }
+}
@@ -0,0 +1,160 @@
+package net.variantgenerator.mod.texture;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of the pixel kernels on the incubating Vector API
+ *
+ * Unpacks the ARGB lanes of several pixels at once, builds the grayscale and
+ * transparency masks lane-wise, gathers palette entries and blends them into
+ * the untouched source lanes. Loop tails fall back to the scalar kernel, so the
+ * output is identical to ScalarPixelKernel.
+ *
+ * Only loaded by PixelKernels when the jdk.incubator.vector module is present.
+ */
+final class VectorPixelKernel implements PixelKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final ThreadLocal<int[]> INDEX_SCRATCH = ThreadLocal.withInitial(() -> new int[LANES]);
+
+    private final ScalarPixelKernel scalar = ScalarPixelKernel.INSTANCE;
+
+    /**
+     * Checks whether vectorizing is worthwhile on this machine
+     */
+    static boolean isWorthwhile() {
+        return LANES >= 4;
+    }
+
+    @Override
+    public int recolor(int[] src, int[] dst, int from, int to, int[] table) {
+        int[] index = INDEX_SCRATCH.get();
+        int upper = from + SPECIES.loopBound(to - from);
+        int changedPixels = 0;
+        int i = from;
+
+        for (; i < upper; i += LANES) {
+            IntVector argb = IntVector.fromArray(SPECIES, src, i);
+            IntVector blue = argb.and(0xFF);
+            VectorMask<Integer> gray = grayscaleMask(argb, blue);
+
+            if (!gray.anyTrue()) {
+                argb.intoArray(dst, i);
+                continue;
+            }
+
+            blue.intoArray(index, 0);
+            IntVector mapped = IntVector.fromArray(SPECIES, table, 0, index, 0).or(argb.and(0xFF000000));
+            argb.blend(mapped, gray).intoArray(dst, i);
+            changedPixels += gray.trueCount();
+        }
+
+        return changedPixels + scalar.recolor(src, dst, i, to, table);
+    }
+
+    @Override
+    public int recolorAll(int[] src, int[][] dst, int from, int to, int[][] tables) {
+        int[] index = INDEX_SCRATCH.get();
+        int tierCount = tables.length;
+        int upper = from + SPECIES.loopBound(to - from);
+        int changedPixels = 0;
+        int i = from;
+
+        for (; i < upper; i += LANES) {
+            IntVector argb = IntVector.fromArray(SPECIES, src, i);
+            IntVector blue = argb.and(0xFF);
+            VectorMask<Integer> gray = grayscaleMask(argb, blue);
+
+            if (!gray.anyTrue()) {
+                for (int t = 0; t < tierCount; t++) {
+                    argb.intoArray(dst[t], i);
+                }
+                continue;
+            }
+
+            blue.intoArray(index, 0);
+            IntVector alpha = argb.and(0xFF000000);
+            for (int t = 0; t < tierCount; t++) {
+                IntVector mapped = IntVector.fromArray(SPECIES, tables[t], 0, index, 0).or(alpha);
+                argb.blend(mapped, gray).intoArray(dst[t], i);
+            }
+            changedPixels += gray.trueCount();
+        }
+
+        return changedPixels + scalar.recolorAll(src, dst, i, to, tables);
+    }
+
+    @Override
+    public void recolorOpaque(int[] src, int[] dst, int from, int to, int[] table) {
+        int[] index = INDEX_SCRATCH.get();
+        int upper = from + SPECIES.loopBound(to - from);
+        int i = from;
+
+        for (; i < upper; i += LANES) {
+            IntVector argb = IntVector.fromArray(SPECIES, src, i);
+            IntVector blue = argb.and(0xFF);
+            VectorMask<Integer> mask = grayscaleMask(argb, blue).and(opaqueMask(argb));
+
+            if (!mask.anyTrue()) {
+                argb.intoArray(dst, i);
+                continue;
+            }
+
+            blue.intoArray(index, 0);
+            IntVector mapped = IntVector.fromArray(SPECIES, table, 0, index, 0).or(argb.and(0xFF000000));
+            argb.blend(mapped, mask).intoArray(dst, i);
+        }
+
+        scalar.recolorOpaque(src, dst, i, to, table);
+    }
+
+    @Override
+    public void mapChannels(int[] src, int[] dst, int from, int to, int[] table) {
+        int[] index = INDEX_SCRATCH.get();
+        int upper = from + SPECIES.loopBound(to - from);
+        int i = from;
+
+        for (; i < upper; i += LANES) {
+            IntVector argb = IntVector.fromArray(SPECIES, src, i);
+            VectorMask<Integer> opaque = opaqueMask(argb);
+
+            if (!opaque.anyTrue()) {
+                argb.intoArray(dst, i);
+                continue;
+            }
+
+            argb.lanewise(VectorOperators.LSHR, 16).and(0xFF).intoArray(index, 0);
+            IntVector red = IntVector.fromArray(SPECIES, table, 0, index, 0);
+            argb.lanewise(VectorOperators.LSHR, 8).and(0xFF).intoArray(index, 0);
+            IntVector green = IntVector.fromArray(SPECIES, table, 0, index, 0);
+            argb.and(0xFF).intoArray(index, 0);
+            IntVector blue = IntVector.fromArray(SPECIES, table, 0, index, 0);
+
+            IntVector mapped = argb.and(0xFF000000)
+                    .or(red.lanewise(VectorOperators.LSHL, 16))
+                    .or(green.lanewise(VectorOperators.LSHL, 8))
+                    .or(blue);
+            argb.blend(mapped, opaque).intoArray(dst, i);
+        }
+
+        scalar.mapChannels(src, dst, i, to, table);
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + LANES;
+    }
+
+    private static VectorMask<Integer> grayscaleMask(IntVector argb, IntVector blue) {
+        IntVector red = argb.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+        IntVector green = argb.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+        return red.eq(green).and(green.eq(blue));
+    }
+
+    private static VectorMask<Integer> opaqueMask(IntVector argb) {
+        return argb.lanewise(VectorOperators.LSHR, 24).compare(VectorOperators.NE, 0);
+    }
+}